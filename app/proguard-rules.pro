@@ -18,4 +18,11 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# Strip debug and verbose logging from release builds. Key-path log calls are additionally
+# wrapped in BuildConfig.DEBUG so their string concatenation is removed as well.
+-assumenosideeffects class android.util.Log {
+    public static int v(...);
+    public static int d(...);
+}
@@ -0,0 +1,103 @@
+package com.takumi.buttonbuddy;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares picker catalog startup with and without the on-disk index on a real device; only
+ * checks that both list the same number of apps. Results are logged under the "CatalogBenchmark" tag:
+ * adb logcat -s CatalogBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppCatalogStartupBenchmark {
+
+    private static final String TAG = "CatalogBenchmark";
+    private static final int ITERATIONS = 5;
+
+    private static final class Result {
+        long firstBatchMillis = -1;
+        long finishedMillis;
+        int appCount;
+    }
+
+    @Test
+    public void indexedStartupVersusFullEnumeration() throws InterruptedException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        long[] fullFirst = new long[ITERATIONS];
+        long[] fullDone = new long[ITERATIONS];
+        long[] indexFirst = new long[ITERATIONS];
+        long[] indexDone = new long[ITERATIONS];
+        int fullCount = 0;
+        int indexCount = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            Result full = run(new AppCatalogLoader(context, false)); // Also (re)writes the index
+            Result indexed = run(new AppCatalogLoader(context, true));
+            fullFirst[i] = full.firstBatchMillis;
+            fullDone[i] = full.finishedMillis;
+            indexFirst[i] = indexed.firstBatchMillis;
+            indexDone[i] = indexed.finishedMillis;
+            fullCount = full.appCount;
+            indexCount = indexed.appCount;
+        }
+
+        Log.i(TAG, "Apps: " + fullCount);
+        Log.i(TAG, "Without index: first batch median " + median(fullFirst) + " ms, complete median " + median(fullDone) + " ms");
+        Log.i(TAG, "With index:    first batch median " + median(indexFirst) + " ms, complete median " + median(indexDone) + " ms");
+        // Five device samples are too few to fail on; the numbers are for reading, the count is checked
+        Log.i(TAG, "Index complete " + (median(fullDone) - median(indexDone)) + " ms sooner than full enumeration");
+
+        assertEquals(fullCount, indexCount);
+    }
+
+    private static Result run(AppCatalogLoader loader) throws InterruptedException {
+        Result result = new Result();
+        CountDownLatch done = new CountDownLatch(1);
+        long start = SystemClock.uptimeMillis();
+        loader.load(new AppCatalogLoader.Callback() {
+            @Override
+            public void onAppsLoaded(List<AppInfo> sortedBatch) {
+                if (result.firstBatchMillis < 0) {
+                    result.firstBatchMillis = SystemClock.uptimeMillis() - start;
+                }
+                result.appCount += sortedBatch.size();
+            }
+
+            @Override
+            public void onAppsChanged(List<AppInfo> sortedUpdates, Set<String> removedPackages) {
+                result.appCount -= removedPackages.size();
+            }
+
+            @Override
+            public void onLoadFinished() {
+                result.finishedMillis = SystemClock.uptimeMillis() - start;
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        loader.cancel();
+        return result;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,122 @@
+package com.takumi.buttonbuddy;
+
+import android.content.Intent;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Flings the picker through a large synthetic catalog on a real device, one scroll step per
+ * frame, with the legacy and the current rendering pipeline, and logs each one's frame time
+ * percentiles from FrameMetrics. Only checks that frames were recorded. Results are logged under
+ * the "PickerBenchmark" tag: adb logcat -s PickerBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class PickerFrameTimingBenchmark {
+
+    private static final String TAG = "PickerBenchmark";
+    private static final int ITERATIONS = 3;
+    private static final int APP_COUNT = 600;
+    private static final int FRAMES = 300;
+    private static final int SCROLL_PER_FRAME_PX = 90; // A brisk fling, more than a row per frame
+
+    @Test
+    public void currentRenderingVersusLegacy() throws InterruptedException {
+        measure(false); // Warms up the process; not logged
+        List<Long> legacy = new ArrayList<>();
+        List<Long> current = new ArrayList<>();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacy.addAll(measure(true)); // Interleaved, so thermal drift hits both alike
+            current.addAll(measure(false));
+        }
+
+        Log.i(TAG, "Legacy:  " + describe(legacy));
+        Log.i(TAG, "Current: " + describe(current));
+
+        assertTrue(!legacy.isEmpty() && !current.isEmpty());
+    }
+
+    private static List<Long> measure(boolean legacyRendering) throws InterruptedException {
+        Intent intent = new Intent(InstrumentationRegistry.getInstrumentation().getTargetContext(), AppPickerActivity.class)
+                .putExtra(AppPickerActivity.EXTRA_LEGACY_RENDERING, legacyRendering);
+        List<Long> frameNanos = new ArrayList<>();
+        HandlerThread metricsThread = new HandlerThread(TAG);
+        metricsThread.start();
+        Window.OnFrameMetricsAvailableListener frameListener = (window, metrics, dropped) -> {
+            synchronized (frameNanos) {
+                frameNanos.add(metrics.getMetric(FrameMetrics.TOTAL_DURATION));
+            }
+        };
+        CountDownLatch scrolled = new CountDownLatch(1);
+        try (ActivityScenario<AppPickerActivity> scenario = ActivityScenario.launch(intent)) {
+            scenario.onActivity(activity -> activity.catalogCallback.onAppsLoaded(syntheticCatalog()));
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            scenario.onActivity(activity -> {
+                RecyclerView recyclerView = activity.findViewById(R.id.app_list_recycler_view);
+                activity.getWindow().addOnFrameMetricsAvailableListener(frameListener, new Handler(metricsThread.getLooper()));
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    int frame;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        recyclerView.scrollBy(0, SCROLL_PER_FRAME_PX);
+                        if (++frame < FRAMES) {
+                            Choreographer.getInstance().postFrameCallback(this);
+                        } else {
+                            scrolled.countDown();
+                        }
+                    }
+                });
+            });
+            assertTrue(scrolled.await(60, TimeUnit.SECONDS));
+            scenario.onActivity(activity -> activity.getWindow().removeOnFrameMetricsAvailableListener(frameListener));
+        } finally {
+            metricsThread.quitSafely();
+        }
+        synchronized (frameNanos) {
+            return new ArrayList<>(frameNanos);
+        }
+    }
+
+    private static List<AppInfo> syntheticCatalog() {
+        List<AppInfo> apps = new ArrayList<>(APP_COUNT);
+        for (int i = 0; i < APP_COUNT; i++) {
+            apps.add(new AppInfo(String.format("App %04d", i), "com.example.app" + i, 0L));
+        }
+        apps.sort(AppInfo.BY_NAME);
+        return apps;
+    }
+
+    private static String describe(List<Long> frameNanos) {
+        long[] sortedMicros = new long[frameNanos.size()];
+        for (int i = 0; i < sortedMicros.length; i++) {
+            sortedMicros[i] = frameNanos.get(i) / 1000;
+        }
+        Arrays.sort(sortedMicros);
+        return sortedMicros.length + " frames, p50 " + percentile(sortedMicros, 50) + " us, p90 "
+                + percentile(sortedMicros, 90) + " us, p99 " + percentile(sortedMicros, 99) + " us";
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * p / 100)];
+    }
+}
@@ -0,0 +1,250 @@
+package com.takumi.buttonbuddy;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs gesture actions on a small bounded pool, so a slow action (a cold app start, a macro
+ * with sleeps) never holds up key handling. Each action runs at most once at a time: a trigger
+ * that arrives while it is still running is dropped or coalesced into a single re-run,
+ * depending on the action's policy. Each run has a timeout, counted from when a worker starts
+ * it rather than from the trigger, after which the worker is interrupted and the run counts as
+ * timed out; an action that ignores the interrupt still blocks its next run until it returns. Outcomes and trigger-to-done latency are kept per
+ * action.
+ */
+final class ActionPipeline {
+
+    static final int POLICY_DROP = 0; // Triggers while the action runs are ignored
+    static final int POLICY_COALESCE = 1; // Any number of triggers while it runs collapse into one re-run
+
+    static final int OUTCOME_OK = 0;
+    static final int OUTCOME_FAILED = 1;
+    static final int OUTCOME_TIMED_OUT = 2;
+    static final int OUTCOME_REJECTED = 3; // The pool's queue was full
+
+    interface Listener {
+        /**
+         * Called on a pipeline thread once per run, or per trigger rejected because the pool was
+         * full (not for dropped or coalesced triggers). Never on the thread that submitted.
+         */
+        void onActionFinished(GestureAction action, int outcome, long latencyNanos);
+    }
+
+    private static final int IDLE = 0;
+    private static final int RUNNING = 1;
+    private static final int RUNNING_PENDING = 2; // Running, with a coalesced re-run queued behind it
+
+    private static final class Entry {
+        final AtomicInteger state = new AtomicInteger(IDLE);
+        volatile long pendingTriggerNanos;
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong timedOut = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong coalesced = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        volatile long lastLatencyNanos;
+        volatile String lastError;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final Listener listener;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    ActionPipeline(int threads, int queueCapacity, Listener listener) {
+        this.listener = listener;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "ButtonBuddyActions-" + threadCount.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true); // Idle most of the time; no threads kept around
+        watchdog = new ScheduledThreadPoolExecutor(1, runnable -> new Thread(runnable, "ButtonBuddyActionTimeouts"));
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Triggers {@code action}. Returns false if the trigger was dropped (the action is already
+     * running under POLICY_DROP, a re-run is already queued, or the pool is full).
+     */
+    boolean submit(GestureAction action) {
+        long triggerNanos = System.nanoTime();
+        Entry entry = entries.computeIfAbsent(action.spec, spec -> new Entry());
+        while (true) {
+            int state = entry.state.get();
+            if (state == IDLE) {
+                if (entry.state.compareAndSet(IDLE, RUNNING)) {
+                    return dispatch(entry, action, triggerNanos);
+                }
+            } else if (state == RUNNING && action.policy == POLICY_COALESCE) {
+                if (entry.state.compareAndSet(RUNNING, RUNNING_PENDING)) {
+                    entry.pendingTriggerNanos = triggerNanos;
+                    entry.coalesced.incrementAndGet();
+                    return true;
+                }
+            } else {
+                if (state == RUNNING_PENDING) {
+                    entry.coalesced.incrementAndGet(); // Folded into the re-run already queued
+                    return true;
+                }
+                entry.dropped.incrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    private boolean dispatch(Entry entry, GestureAction action, long triggerNanos) {
+        try {
+            executor.execute(new Run(entry, action, triggerNanos));
+            return true;
+        } catch (RejectedExecutionException e) {
+            entry.dropped.incrementAndGet();
+            entry.state.set(IDLE);
+            long latency = System.nanoTime() - triggerNanos;
+            try {
+                // Reported from the pipeline's own thread, as the Listener contract says
+                watchdog.execute(() -> listener.onActionFinished(action, OUTCOME_REJECTED, latency));
+            } catch (RejectedExecutionException shutDown) {
+                // Shutting down; nobody is listening any more
+            }
+            return false;
+        }
+    }
+
+    private final class Run extends FutureTask<Boolean> {
+        final Entry entry;
+        final GestureAction action;
+        final long triggerNanos;
+        volatile ScheduledFuture<?> timeout;
+
+        Run(Entry entry, GestureAction action, long triggerNanos) {
+            super(action::run);
+            this.entry = entry;
+            this.action = action;
+            this.triggerNanos = triggerNanos;
+        }
+
+        // FutureTask's done() would run on the watchdog thread as soon as a timeout cancels the
+        // run, while the worker may still be inside action.run; completing here instead keeps
+        // the next run from starting before this one has really ended
+        @Override
+        public void run() {
+            try {
+                // Armed only now, so time spent queued behind other runs does not count
+                timeout = watchdog.schedule(() -> cancel(true), action.timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; run without a timeout
+            }
+            try {
+                super.run();
+            } finally {
+                Thread.interrupted(); // A timeout's interrupt must not leak into the listener
+                complete();
+            }
+        }
+
+        // Runs once the action returned, threw, or was cancelled and has returned since
+        private void complete() {
+            long latency = System.nanoTime() - triggerNanos;
+            ScheduledFuture<?> pendingTimeout = timeout;
+            if (pendingTimeout != null) {
+                pendingTimeout.cancel(false);
+            }
+            int outcome;
+            if (isCancelled()) {
+                outcome = OUTCOME_TIMED_OUT;
+                entry.timedOut.incrementAndGet();
+                entry.lastError = "timed out after " + action.timeoutMillis + " ms";
+            } else {
+                outcome = OUTCOME_FAILED;
+                try {
+                    if (get()) {
+                        outcome = OUTCOME_OK;
+                    }
+                } catch (ExecutionException e) {
+                    entry.lastError = String.valueOf(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                (outcome == OUTCOME_OK ? entry.succeeded : entry.failed).incrementAndGet();
+            }
+            entry.runs.incrementAndGet();
+            entry.lastLatencyNanos = latency;
+            entry.totalLatencyNanos.addAndGet(latency);
+            entry.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            finish(entry, action); // First, so the action can be triggered again from the listener
+            listener.onActionFinished(action, outcome, latency);
+        }
+    }
+
+    private void finish(Entry entry, GestureAction action) {
+        while (true) {
+            if (entry.state.compareAndSet(RUNNING_PENDING, RUNNING)) {
+                dispatch(entry, action, entry.pendingTriggerNanos);
+                return;
+            }
+            if (entry.state.compareAndSet(RUNNING, IDLE)) {
+                return;
+            }
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    String describe() {
+        if (entries.isEmpty()) {
+            return "Actions: none triggered yet\n";
+        }
+        StringBuilder sb = new StringBuilder("Actions:\n");
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            long runs = entry.runs.get();
+            sb.append("  ").append(e.getKey()).append(": ")
+                    .append(runs).append(" runs (").append(entry.succeeded.get()).append(" ok, ")
+                    .append(entry.failed.get()).append(" failed, ").append(entry.timedOut.get()).append(" timed out), ")
+                    .append(entry.dropped.get()).append(" dropped, ").append(entry.coalesced.get()).append(" coalesced");
+            if (runs > 0) {
+                sb.append(String.format(Locale.US, ", latency last %.1f ms, avg %.1f ms, max %.1f ms",
+                        entry.lastLatencyNanos / 1e6, entry.totalLatencyNanos.get() / 1e6 / runs,
+                        entry.maxLatencyNanos.get() / 1e6));
+            }
+            if (entry.lastError != null) {
+                sb.append(", last error: ").append(entry.lastError);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Runs of {@code spec} so far, for tests. */
+    long runCount(String spec) {
+        Entry entry = entries.get(spec);
+        return entry != null ? entry.runs.get() : 0;
+    }
+
+    long droppedCount(String spec) {
+        Entry entry = entries.get(spec);
+        return entry != null ? entry.dropped.get() : 0;
+    }
+
+    long coalescedCount(String spec) {
+        Entry entry = entries.get(spec);
+        return entry != null ? entry.coalesced.get() : 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.takumi.buttonbuddy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact on-disk copy of the picker's app catalog, read at startup for near-instant display.
+ * Besides the entries it remembers the PackageManager change sequence number (with the boot it
+ * belongs to, since sequence numbers restart at every boot) and the locale the labels were
+ * loaded in, which is what the incremental refresh needs.
+ */
+final class AppCatalogIndex {
+
+    private static final int MAGIC = 0x42424349; // "BBCI"
+    private static final int VERSION = 1;
+
+    static final class Snapshot {
+        final int bootCount;
+        final int sequenceNumber;
+        final String locale;
+        final List<AppInfo> apps; // Sorted with AppInfo.BY_NAME
+
+        Snapshot(int bootCount, int sequenceNumber, String locale, List<AppInfo> apps) {
+            this.bootCount = bootCount;
+            this.sequenceNumber = sequenceNumber;
+            this.locale = locale;
+            this.apps = apps;
+        }
+    }
+
+    private AppCatalogIndex() {
+    }
+
+    /** Returns null if the file is missing, from another format version or unreadable. */
+    static Snapshot read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int bootCount = in.readInt();
+            int sequenceNumber = in.readInt();
+            String locale = in.readUTF();
+            int count = in.readInt();
+            if (count < 0) {
+                return null;
+            }
+            List<AppInfo> apps = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String packageName = in.readUTF();
+                String appName = in.readUTF();
+                String sortKey = in.readUTF();
+                long lastUpdateTime = in.readLong();
+                String iconKey = in.readUTF();
+                apps.add(new AppInfo(appName, packageName, sortKey, lastUpdateTime, iconKey));
+            }
+            return new Snapshot(bootCount, sequenceNumber, locale, apps);
+        } catch (EOFException e) {
+            return null; // Truncated file, rebuild it
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Writes to a temp file first, so a crash never leaves a half-written index behind. */
+    static void write(File file, Snapshot snapshot) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.bootCount);
+            out.writeInt(snapshot.sequenceNumber);
+            out.writeUTF(snapshot.locale);
+            out.writeInt(snapshot.apps.size());
+            for (AppInfo app : snapshot.apps) {
+                out.writeUTF(app.getPackageName());
+                out.writeUTF(app.getAppName());
+                out.writeUTF(app.getSortKey());
+                out.writeLong(app.getLastUpdateTime());
+                out.writeUTF(app.getIconKey());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.takumi.buttonbuddy;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ChangedPackages;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the picker's app list on a background thread and streams it to the main thread in
+ * sorted batches. Icons are left to {@link IconCache}. The first batch is kept small so the
+ * first screen shows up right away.
+ *
+ * The catalog is persisted in an {@link AppCatalogIndex}. Later opens show the index at once
+ * and then only look at packages PackageManager reports as changed since the stored sequence
+ * number. After a reboot (sequence numbers restart) or a locale change the launcher activities
+ * are re-enumerated, but labels are only reloaded for packages whose lastUpdateTime moved.
+ * After a full enumeration the sequence number to resume from is asked for only once the apps
+ * are delivered, and from the last known number of this boot where there is one, since asking
+ * from 0 sends every package name changed since boot across binder.
+ *
+ * Apps in other profiles (a work profile) come from LauncherApps, each profile on its own
+ * worker in parallel with the above; they are not indexed, since PackageManager's change
+ * sequence only covers ButtonBuddy's own profile. Their keys carry the profile's user serial.
+ */
+final class AppCatalogLoader {
+
+    private static final String TAG = "AppCatalogLoader";
+    private static final String INDEX_FILE_NAME = "app_catalog.idx";
+    private static final int FIRST_BATCH_SIZE = 12; // Roughly one screen of rows
+    private static final int BATCH_SIZE = 48;
+
+    interface Callback {
+        /** Delivered on the main thread, already sorted with {@link AppInfo#BY_NAME}. */
+        void onAppsLoaded(List<AppInfo> sortedBatch);
+
+        /** Apps added or updated (sorted) and {@link AppInfo#getKey() keys} removed since the last delivery. */
+        void onAppsChanged(List<AppInfo> sortedUpdates, Set<String> removedKeys);
+
+        void onLoadFinished();
+    }
+
+    private final Context context;
+    private final PackageManager pm;
+    private final LauncherApps launcherApps;
+    private final File indexFile;
+    private final boolean useIndex;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private ExecutorService profileExecutor; // One thread per other profile
+    private LauncherApps.Callback profileCallback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean cancelled = false;
+
+    // Only touched on the executor thread
+    private final Map<String, AppInfo> catalog = new HashMap<>();
+    private int sequenceNumber;
+    private int bootCount;
+
+    AppCatalogLoader(Context context) {
+        this(context, true);
+    }
+
+    /** {@code useIndex = false} always enumerates from scratch; used to benchmark the index. */
+    AppCatalogLoader(Context context, boolean useIndex) {
+        this.context = context.getApplicationContext();
+        this.pm = this.context.getPackageManager();
+        this.launcherApps = this.context.getSystemService(LauncherApps.class);
+        this.indexFile = new File(this.context.getFilesDir(), INDEX_FILE_NAME);
+        this.useIndex = useIndex;
+    }
+
+    void load(Callback callback) {
+        loadOtherProfiles(callback);
+        executor.execute(() -> {
+            bootCount = Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+            String locale = Locale.getDefault().toLanguageTag();
+            AppCatalogIndex.Snapshot index = useIndex ? AppCatalogIndex.read(indexFile) : null;
+
+            boolean changed;
+            if (index == null) {
+                changed = buildFromScratch(callback);
+            } else {
+                for (AppInfo app : index.apps) {
+                    catalog.put(app.getPackageName(), app);
+                }
+                deliverBatch(new ArrayList<>(index.apps), callback); // Already sorted on disk
+                boolean sameBoot = bootCount != -1 && index.bootCount == bootCount;
+                boolean sameLocale = locale.equals(index.locale);
+                if (sameBoot && sameLocale) {
+                    sequenceNumber = index.sequenceNumber;
+                    changed = refreshChangedPackages(callback, null);
+                } else {
+                    changed = reconcile(callback, !sameLocale, sameBoot ? index.sequenceNumber : 0);
+                }
+            }
+            if (changed && !cancelled) {
+                saveIndex(locale);
+            }
+            mainHandler.post(() -> {
+                if (!cancelled) {
+                    callback.onLoadFinished();
+                }
+            });
+        });
+    }
+
+    /**
+     * Picks up package changes without re-enumerating. {@code packageName}, the package a
+     * broadcast named (or null), is re-resolved even if the change sequence does not list it:
+     * a change in the middle of a full enumeration predates the sequence number taken after it.
+     */
+    void refresh(Callback callback, String packageName) {
+        executor.execute(() -> {
+            if (refreshChangedPackages(callback, packageName) && !cancelled) {
+                saveIndex(Locale.getDefault().toLanguageTag());
+            }
+        });
+    }
+
+    void cancel() {
+        cancelled = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        executor.shutdownNow();
+        if (profileExecutor != null) {
+            profileExecutor.shutdownNow();
+            launcherApps.unregisterCallback(profileCallback);
+        }
+    }
+
+    private void loadOtherProfiles(Callback callback) {
+        List<UserHandle> profiles = new ArrayList<>(context.getSystemService(UserManager.class).getUserProfiles());
+        profiles.remove(Process.myUserHandle());
+        if (profiles.isEmpty()) {
+            return;
+        }
+        profileExecutor = Executors.newFixedThreadPool(profiles.size());
+        for (UserHandle user : profiles) {
+            profileExecutor.execute(() -> loadProfile(user, callback));
+        }
+        profileCallback = new ProfileCallback(callback);
+        launcherApps.registerCallback(profileCallback, mainHandler);
+    }
+
+    // Runs on a profile worker
+    private void loadProfile(UserHandle user, Callback callback) {
+        long userSerial = ProfileApps.serialOf(context, user);
+        List<AppInfo> batch = new ArrayList<>(FIRST_BATCH_SIZE);
+        int batchSize = FIRST_BATCH_SIZE;
+        Set<String> seen = new HashSet<>();
+        for (LauncherActivityInfo activity : launcherApps.getActivityList(null, user)) {
+            if (cancelled) {
+                return;
+            }
+            if (!seen.add(activity.getApplicationInfo().packageName)) {
+                continue;
+            }
+            AppInfo app = loadProfileApp(activity, userSerial);
+            if (app == null) {
+                continue;
+            }
+            batch.add(app);
+            if (batch.size() >= batchSize) {
+                deliverBatch(batch, callback);
+                batch = new ArrayList<>(BATCH_SIZE);
+                batchSize = BATCH_SIZE;
+            }
+        }
+        if (!batch.isEmpty()) {
+            deliverBatch(batch, callback);
+        }
+    }
+
+    private AppInfo loadProfileApp(LauncherActivityInfo activity, long userSerial) {
+        ApplicationInfo appInfo = activity.getApplicationInfo();
+        try {
+            // Badged ("Work Gmail") so the picker tells it apart from the personal copy.
+            // Other profiles' update times are not visible; the install time still keys icons
+            String label = pm.getUserBadgedLabel(appInfo.loadLabel(pm), activity.getUser()).toString();
+            return new AppInfo(label, appInfo.packageName, activity.getFirstInstallTime(), userSerial);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Skipping " + appInfo.packageName + " in profile " + userSerial + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Package changes in other profiles; the package broadcasts only cover ButtonBuddy's own
+    private final class ProfileCallback extends LauncherApps.Callback {
+        private final Callback callback;
+
+        ProfileCallback(Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onPackageAdded(String packageName, UserHandle user) {
+            refreshProfilePackages(new String[]{packageName}, user, callback);
+        }
+
+        @Override
+        public void onPackageChanged(String packageName, UserHandle user) {
+            refreshProfilePackages(new String[]{packageName}, user, callback);
+        }
+
+        @Override
+        public void onPackageRemoved(String packageName, UserHandle user) {
+            refreshProfilePackages(new String[]{packageName}, user, callback);
+        }
+
+        @Override
+        public void onPackagesAvailable(String[] packageNames, UserHandle user, boolean replacing) {
+            refreshProfilePackages(packageNames, user, callback);
+        }
+
+        @Override
+        public void onPackagesUnavailable(String[] packageNames, UserHandle user, boolean replacing) {
+            refreshProfilePackages(packageNames, user, callback); // e.g. the work profile was paused
+        }
+    }
+
+    private void refreshProfilePackages(String[] packageNames, UserHandle user, Callback callback) {
+        if (user.equals(Process.myUserHandle()) || cancelled) {
+            return;
+        }
+        profileExecutor.execute(() -> {
+            long userSerial = ProfileApps.serialOf(context, user);
+            List<AppInfo> updates = new ArrayList<>();
+            Set<String> removed = new HashSet<>();
+            for (String packageName : packageNames) {
+                LauncherActivityInfo activity = ProfileApps.mainActivity(context, packageName, user);
+                AppInfo app = activity != null ? loadProfileApp(activity, userSerial) : null;
+                if (app != null) {
+                    updates.add(app);
+                } else {
+                    removed.add(AppInfo.keyOf(packageName, userSerial));
+                }
+            }
+            deliverChanges(updates, removed, callback);
+        });
+    }
+
+    private boolean buildFromScratch(Callback callback) {
+        Map<String, Long> updateTimes = installedUpdateTimes();
+
+        // One query for every launchable activity instead of a launch-intent IPC per package
+        List<LauncherActivityInfo> launchables = launcherApps.getActivityList(null, Process.myUserHandle());
+        List<AppInfo> batch = new ArrayList<>(FIRST_BATCH_SIZE);
+        int batchSize = FIRST_BATCH_SIZE;
+        for (LauncherActivityInfo launchable : launchables) {
+            if (cancelled) {
+                return false;
+            }
+            ApplicationInfo appInfo = launchable.getApplicationInfo();
+            if (catalog.containsKey(appInfo.packageName)) {
+                continue; // Apps with several launcher activities are listed once
+            }
+            AppInfo app = loadApp(appInfo, updateTimes);
+            if (app == null) {
+                continue;
+            }
+            catalog.put(app.getPackageName(), app);
+            batch.add(app);
+            if (batch.size() >= batchSize) {
+                deliverBatch(batch, callback);
+                batch = new ArrayList<>(BATCH_SIZE);
+                batchSize = BATCH_SIZE;
+            }
+        }
+        if (!batch.isEmpty()) {
+            deliverBatch(batch, callback);
+        }
+        sequenceNumber = sequenceNumberAfter(0); // Once the list is up; the one call that costs a name per change
+        return true;
+    }
+
+    // Full re-enumeration against the index: only new or updated packages get their label loaded.
+    // knownSequenceNumber is the index's when it is from this boot, else 0.
+    private boolean reconcile(Callback callback, boolean relabelAll, int knownSequenceNumber) {
+        Map<String, Long> updateTimes = installedUpdateTimes();
+        List<LauncherActivityInfo> launchables = launcherApps.getActivityList(null, Process.myUserHandle());
+
+        Set<String> removed = new HashSet<>(catalog.keySet());
+        List<AppInfo> updates = new ArrayList<>();
+        for (LauncherActivityInfo launchable : launchables) {
+            if (cancelled) {
+                return false;
+            }
+            ApplicationInfo appInfo = launchable.getApplicationInfo();
+            if (!removed.remove(appInfo.packageName) && catalog.containsKey(appInfo.packageName)) {
+                continue; // Second launcher activity of a package already handled
+            }
+            AppInfo known = catalog.get(appInfo.packageName);
+            Long updateTime = updateTimes.get(appInfo.packageName);
+            if (!relabelAll && known != null && updateTime != null && known.getLastUpdateTime() == updateTime) {
+                continue;
+            }
+            AppInfo app = loadApp(appInfo, updateTimes);
+            if (app != null) {
+                catalog.put(app.getPackageName(), app);
+                updates.add(app);
+            }
+        }
+        catalog.keySet().removeAll(removed);
+        deliverChanges(updates, removed, callback);
+        sequenceNumber = sequenceNumberAfter(knownSequenceNumber);
+        return true; // Boot count, locale and sequence number changed even if no app did
+    }
+
+    private boolean refreshChangedPackages(Callback callback, String alsoChanged) {
+        ChangedPackages changes = pm.getChangedPackages(sequenceNumber);
+        if (changes == null && alsoChanged == null) {
+            return false; // Nothing changed since the index was written
+        }
+        Set<String> changedPackages = new HashSet<>();
+        if (changes != null) {
+            sequenceNumber = changes.getSequenceNumber();
+            changedPackages.addAll(changes.getPackageNames());
+        }
+        if (alsoChanged != null) {
+            changedPackages.add(alsoChanged);
+        }
+
+        Set<String> removed = new HashSet<>();
+        List<AppInfo> updates = new ArrayList<>();
+        for (String packageName : changedPackages) {
+            if (cancelled) {
+                return false;
+            }
+            AppInfo app = resolvePackage(packageName);
+            if (app != null) {
+                catalog.put(packageName, app);
+                updates.add(app);
+            } else if (catalog.remove(packageName) != null) {
+                removed.add(packageName); // Uninstalled, disabled or no longer launchable
+            }
+        }
+        deliverChanges(updates, removed, callback);
+        return true; // The sequence number moved even if no listed app changed
+    }
+
+    private AppInfo resolvePackage(String packageName) {
+        LauncherActivityInfo launchable = ProfileApps.mainActivity(context, packageName, Process.myUserHandle());
+        if (launchable == null) {
+            return null;
+        }
+        try {
+            PackageInfo packageInfo = pm.getPackageInfo(packageName, 0);
+            ApplicationInfo appInfo = launchable.getApplicationInfo();
+            return new AppInfo(appInfo.loadLabel(pm).toString(), packageName, packageInfo.lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private AppInfo loadApp(ApplicationInfo appInfo, Map<String, Long> updateTimes) {
+        try {
+            Long updateTime = updateTimes.get(appInfo.packageName);
+            return new AppInfo(appInfo.loadLabel(pm).toString(), appInfo.packageName, updateTime != null ? updateTime : 0);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Skipping " + appInfo.packageName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // One bulk call instead of a getPackageInfo IPC per package
+    private Map<String, Long> installedUpdateTimes() {
+        List<PackageInfo> packages = pm.getInstalledPackages(0);
+        Map<String, Long> updateTimes = new HashMap<>(packages.size() * 2);
+        for (PackageInfo packageInfo : packages) {
+            updateTimes.put(packageInfo.packageName, packageInfo.lastUpdateTime);
+        }
+        return updateTimes;
+    }
+
+    // The current change sequence number, asked for from the latest one known so that only the
+    // packages changed since cross binder. A package that changes in the middle of an enumeration
+    // is still picked up: the picker refreshes on its package broadcast, naming the package.
+    private int sequenceNumberAfter(int knownSequenceNumber) {
+        ChangedPackages changes = pm.getChangedPackages(knownSequenceNumber);
+        return changes != null ? changes.getSequenceNumber() : knownSequenceNumber;
+    }
+
+    private void saveIndex(String locale) {
+        List<AppInfo> apps = new ArrayList<>(catalog.values());
+        apps.sort(AppInfo.BY_NAME);
+        try {
+            AppCatalogIndex.write(indexFile, new AppCatalogIndex.Snapshot(bootCount, sequenceNumber, locale, apps));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write app catalog index: " + e.getMessage());
+        }
+    }
+
+    private void deliverBatch(List<AppInfo> batch, Callback callback) {
+        batch.sort(AppInfo.BY_NAME);
+        mainHandler.post(() -> {
+            if (!cancelled) {
+                callback.onAppsLoaded(batch);
+            }
+        });
+    }
+
+    private boolean deliverChanges(List<AppInfo> updates, Set<String> removed, Callback callback) {
+        if (updates.isEmpty() && removed.isEmpty()) {
+            return false;
+        }
+        updates.sort(AppInfo.BY_NAME);
+        mainHandler.post(() -> {
+            if (!cancelled) {
+                callback.onAppsChanged(updates, removed);
+            }
+        });
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+package com.takumi.buttonbuddy;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+// --- AppInfo Data Class ---
+// Icons are not held here; IconCache loads them lazily per visible row.
+// Apps from other profiles (a work profile) carry that profile's user serial number.
+class AppInfo {
+    static final long MY_PROFILE = -1; // userSerial of apps in the profile ButtonBuddy itself runs in
+    private static final char USER_SEPARATOR = '@'; // Never part of a package name
+
+    // Alphabetical by app name, the order the picker shows. Uses the precomputed sort key
+    // so sorting and merging never case-fold labels again.
+    static final Comparator<AppInfo> BY_NAME = (o1, o2) -> {
+        int byName = o1.sortKey.compareTo(o2.sortKey);
+        if (byName != 0) {
+            return byName;
+        }
+        int byPackage = o1.packageName.compareTo(o2.packageName);
+        return byPackage != 0 ? byPackage : Long.compare(o1.userSerial, o2.userSerial);
+    };
+
+    private final String appName;
+    private final String packageName;
+    private final String sortKey;
+    private final long lastUpdateTime;
+    private final String iconKey;
+    private final long userSerial;
+    private final String key;
+
+    public AppInfo(String appName, String packageName, long lastUpdateTime) {
+        this(appName, packageName, lastUpdateTime, MY_PROFILE);
+    }
+
+    AppInfo(String appName, String packageName, long lastUpdateTime, long userSerial) {
+        this(appName, packageName, sortKeyOf(appName), lastUpdateTime,
+                iconKeyOf(keyOf(packageName, userSerial), lastUpdateTime), userSerial);
+    }
+
+    AppInfo(String appName, String packageName, String sortKey, long lastUpdateTime, String iconKey) {
+        this(appName, packageName, sortKey, lastUpdateTime, iconKey, MY_PROFILE);
+    }
+
+    private AppInfo(String appName, String packageName, String sortKey, long lastUpdateTime, String iconKey, long userSerial) {
+        this.appName = appName;
+        this.packageName = packageName;
+        this.sortKey = sortKey;
+        this.lastUpdateTime = lastUpdateTime;
+        this.iconKey = iconKey;
+        this.userSerial = userSerial;
+        this.key = keyOf(packageName, userSerial);
+    }
+
+    /**
+     * Identifies an app across profiles, and is what a binding stores as its target: the plain
+     * package name in ButtonBuddy's own profile, "package@serial" in any other.
+     */
+    static String keyOf(String packageName, long userSerial) {
+        return userSerial == MY_PROFILE ? packageName : packageName + USER_SEPARATOR + userSerial;
+    }
+
+    static String packageOf(String key) {
+        int at = key.indexOf(USER_SEPARATOR);
+        return at < 0 ? key : key.substring(0, at);
+    }
+
+    /** The user serial number in {@code key}, or {@link #MY_PROFILE}. */
+    static long userSerialOf(String key) {
+        int at = key.indexOf(USER_SEPARATOR);
+        if (at < 0) {
+            return MY_PROFILE;
+        }
+        try {
+            return Long.parseLong(key.substring(at + 1));
+        } catch (NumberFormatException e) {
+            return MY_PROFILE;
+        }
+    }
+
+    static String sortKeyOf(String appName) {
+        return appName.toLowerCase(Locale.ROOT);
+    }
+
+    // Changes when the app is updated, so a new icon is never served from a stale cache entry
+    static String iconKeyOf(String key, long lastUpdateTime) {
+        return key + "@" + lastUpdateTime;
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    public String getIconKey() {
+        return iconKey;
+    }
+
+    public long getUserSerial() {
+        return userSerial;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
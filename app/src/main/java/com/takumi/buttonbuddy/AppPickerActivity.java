@@ -3,19 +3,28 @@ package com.takumi.buttonbuddy;
 import androidx.activity.EdgeToEdge;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.ConcatAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.appcompat.widget.SearchView; // Import SearchView
 
-import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -23,13 +32,45 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AppPickerActivity extends AppCompatActivity {
 
+    private static final String TAG = "AppPickerActivity";
+
+    // Per-app shortcuts take two passes: first the app that has to be in front, then the target
+    static final String EXTRA_PICK_FOREGROUND_APP = "com.takumi.buttonbuddy.PICK_FOREGROUND_APP";
+    static final String EXTRA_FOREGROUND_PACKAGE = "com.takumi.buttonbuddy.FOREGROUND_PACKAGE";
+    static final String EXTRA_FOREGROUND_NAME = "com.takumi.buttonbuddy.FOREGROUND_NAME";
+    // Synchronous inflation, a click lambda per bind and no stable IDs, kept to measure the
+    // rendering pipeline against (PickerFrameTimingTest)
+    static final String EXTRA_LEGACY_RENDERING = "com.takumi.buttonbuddy.LEGACY_RENDERING";
+
+    // Fixed view types shared across the ConcatAdapter, so both lists draw from one row pool
+    private static final int VIEW_TYPE_APP = R.layout.app_list_item;
+    private static final int VIEW_TYPE_HEADER = R.layout.section_header;
+    private static final int CACHED_ROWS = 4; // Kept bound past each edge, so scrolling back skips rebinding
+
+    private boolean pickForegroundApp;
+    private String foregroundPackage; // Set in the second pass
+    private String foregroundName;
+
     private AppListAdapter appListAdapter;
-    private List<AppInfo> fullAppList; // Store the complete list of apps
+    AppRows rows; // Package-private so PickerFrameTimingTest can count row inflations
+    private AppCatalogLoader catalogLoader;
+    private IconCache iconCache;
+    private UsageStore usageStore;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -42,14 +83,48 @@ public class AppPickerActivity extends AppCompatActivity {
             return insets;
         });
 
-        setTitle("Select App to Launch"); // Set activity title
+        pickForegroundApp = getIntent().getBooleanExtra(EXTRA_PICK_FOREGROUND_APP, false);
+        foregroundPackage = getIntent().getStringExtra(EXTRA_FOREGROUND_PACKAGE);
+        foregroundName = getIntent().getStringExtra(EXTRA_FOREGROUND_NAME);
+        if (pickForegroundApp) {
+            setTitle("Select App Shortcut Applies In");
+        } else if (foregroundPackage != null) {
+            setTitle("Select App to Launch in " + foregroundName);
+        } else {
+            setTitle("Select App to Launch"); // Set activity title
+        }
 
+        boolean legacyRendering = getIntent().getBooleanExtra(EXTRA_LEGACY_RENDERING, false);
         RecyclerView recyclerView = findViewById(R.id.app_list_recycler_view);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        int rowHeight = getResources().getDimensionPixelSize(R.dimen.app_row_height);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        if (!legacyRendering) {
+            // GapWorker binds the row about to scroll in during the idle time of the previous
+            // frame, instead of laying out extra rows inside the frame that scrolls
+            layoutManager.setItemPrefetchEnabled(true);
+            recyclerView.setHasFixedSize(true); // Match-parent size, rows of one fixed height
+            recyclerView.setItemViewCacheSize(CACHED_ROWS * 2);
+        }
 
-        loadInstalledApps(); // Load the full list
-        appListAdapter = new AppListAdapter(this, fullAppList); // Pass the full list initially
-        recyclerView.setAdapter(appListAdapter);
+        iconCache = new IconCache(this, getResources().getDimensionPixelSize(R.dimen.app_icon_size));
+        usageStore = AppPrefs.getUsageStore(this);
+        rows = new AppRows(this, recyclerView, iconCache, legacyRendering);
+        SuggestedSection suggested = new SuggestedSection(rows);
+        appListAdapter = new AppListAdapter(rows, usageStore, suggested); // Filled in batches by the loader
+        if (legacyRendering) {
+            recyclerView.setAdapter(new ConcatAdapter(suggested.header, suggested.adapter, suggested.allAppsHeader, appListAdapter));
+        } else {
+            ConcatAdapter.Config config = new ConcatAdapter.Config.Builder()
+                    .setIsolateViewTypes(false)
+                    .setStableIdMode(ConcatAdapter.Config.StableIdMode.ISOLATED_STABLE_IDS) // An app can be in both lists
+                    .build();
+            recyclerView.setAdapter(new ConcatAdapter(config, suggested.header, suggested.adapter, suggested.allAppsHeader, appListAdapter));
+            // Enough rows for a screen, the view cache and the prefetched row, inflated off the main thread
+            int screenRows = getResources().getDisplayMetrics().heightPixels / rowHeight + 1;
+            rows.prewarm(appListAdapter, screenRows + 2 * CACHED_ROWS + 1);
+        }
+        loadInstalledApps();
 
         // Declare SearchView
         SearchView searchView = findViewById(R.id.app_search_view); // Initialize SearchView
@@ -69,117 +144,493 @@ public class AppPickerActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        unregisterReceiver(packageChangeReceiver);
+        catalogLoader.cancel();
+        appListAdapter.shutdown();
+        iconCache.shutdown();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        iconCache.onTrimMemory(level);
+    }
+
+    void onAppPicked(AppInfo app) {
+        if (pickForegroundApp) {
+            Intent intent = new Intent(this, AppPickerActivity.class);
+            intent.putExtra(EXTRA_FOREGROUND_PACKAGE, app.getPackageName()); // Window events carry no profile
+            intent.putExtra(EXTRA_FOREGROUND_NAME, app.getAppName());
+            startActivity(intent);
+        } else if (foregroundPackage != null) {
+            usageStore.record(app.getKey(), System.currentTimeMillis());
+            AppPrefs.updateProfiles(this, profiles -> profiles.with(foregroundPackage,
+                    GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS, app.getKey()));
+            Toast.makeText(this, "Set " + app.getAppName() + " as launch target in " + foregroundName + ".", Toast.LENGTH_SHORT).show();
+        } else {
+            usageStore.record(app.getKey(), System.currentTimeMillis());
+            AppPrefs.saveTargetPackage(this, app.getKey()); // Includes the profile for work apps
+            Toast.makeText(this, "Set " + app.getAppName() + " as launch target.", Toast.LENGTH_SHORT).show();
+        }
+        finish(); // Close the activity
+    }
+
+    // Package-private so PickerFrameTimingTest can feed a synthetic catalog
+    final AppCatalogLoader.Callback catalogCallback = new AppCatalogLoader.Callback() {
+        @Override
+        public void onAppsLoaded(List<AppInfo> sortedBatch) {
+            appListAdapter.addApps(sortedBatch);
+        }
+
+        @Override
+        public void onAppsChanged(List<AppInfo> sortedUpdates, Set<String> removedKeys) {
+            appListAdapter.applyChanges(sortedUpdates, removedKeys);
+        }
+
+        @Override
+        public void onLoadFinished() {
+            Log.d(TAG, "App catalog loaded: " + appListAdapter.getCatalogSize() + " apps");
+        }
+    };
+
+    // Packages installed, updated or removed while the picker is open
+    private final BroadcastReceiver packageChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            catalogLoader.refresh(catalogCallback, data != null ? data.getSchemeSpecificPart() : null);
+        }
+    };
+
     private void loadInstalledApps() {
-        fullAppList = new ArrayList<>(); // Initialize the full list
-        PackageManager pm = getPackageManager();
-        List<ApplicationInfo> applications = pm.getInstalledApplications(PackageManager.GET_META_DATA);
+        // Shows the on-disk index immediately, then applies only what changed since it was written
+        catalogLoader = new AppCatalogLoader(this);
+        catalogLoader.load(catalogCallback);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        ContextCompat.registerReceiver(this, packageChangeReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    private static final DiffUtil.ItemCallback<AppInfo> DIFF_CALLBACK = new DiffUtil.ItemCallback<AppInfo>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.getKey().equals(newItem.getKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.getAppName().equals(newItem.getAppName())
+                    && oldItem.getIconKey().equals(newItem.getIconKey());
+        }
+    };
+
+    // --- "Suggested" section ---
+    // The most used apps above the full list, for an empty or one-letter query. Its headers are
+    // separate adapters so the whole section appears and disappears with the suggestions.
+    private static final class SuggestedSection {
+        final SectionHeaderAdapter header = new SectionHeaderAdapter("Suggested");
+        final SectionHeaderAdapter allAppsHeader = new SectionHeaderAdapter("All apps");
+        final SuggestedAdapter adapter;
 
-        for (ApplicationInfo appInfo : applications) {
-            if (pm.getLaunchIntentForPackage(appInfo.packageName) != null) { // Only show launchable apps
-                String appName = appInfo.loadLabel(pm).toString();
-                String packageName = appInfo.packageName;
-                Drawable appIcon = appInfo.loadIcon(pm);
+        SuggestedSection(AppRows rows) {
+            adapter = new SuggestedAdapter(rows);
+            header.setHasStableIds(!rows.legacyRendering);
+            allAppsHeader.setHasStableIds(!rows.legacyRendering);
+        }
+
+        void show(List<AppInfo> apps) {
+            adapter.submitList(apps);
+            header.setVisible(!apps.isEmpty());
+            allAppsHeader.setVisible(!apps.isEmpty());
+        }
+    }
+
+    private static final class SectionHeaderAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        private final String title;
+        private boolean visible;
+
+        SectionHeaderAdapter(String title) {
+            this.title = title;
+        }
 
-                fullAppList.add(new AppInfo(appName, packageName, appIcon));
+        void setVisible(boolean visible) {
+            if (this.visible == visible) {
+                return;
             }
+            this.visible = visible;
+            if (visible) {
+                notifyItemInserted(0);
+            } else {
+                notifyItemRemoved(0);
+            }
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return VIEW_TYPE_HEADER;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return 0; // The only row; ConcatAdapter keeps it apart from the other adapters' IDs
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.section_header, parent, false);
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+            ((TextView) holder.itemView).setText(title);
+        }
+
+        @Override
+        public int getItemCount() {
+            return visible ? 1 : 0;
+        }
+    }
+
+    private static final class SuggestedAdapter extends ListAdapter<AppInfo, AppViewHolder> {
+        private final AppRows rows;
+
+        SuggestedAdapter(AppRows rows) {
+            super(DIFF_CALLBACK);
+            this.rows = rows;
+            setHasStableIds(!rows.legacyRendering);
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return VIEW_TYPE_APP;
         }
 
-        // Sort the list alphabetically by app name
-        fullAppList.sort((o1, o2) -> o1.getAppName().compareToIgnoreCase(o2.getAppName()));
+        @Override
+        public long getItemId(int position) {
+            return rows.stableId(getItem(position));
+        }
+
+        @NonNull
+        @Override
+        public AppViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return rows.create(parent);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull AppViewHolder holder, int position) {
+            rows.bind(holder, getItem(position));
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull AppViewHolder holder) {
+            super.onViewRecycled(holder);
+            holder.recycle();
+        }
     }
 
-    // --- AppInfo Data Class (No changes needed here) ---
-    private static class AppInfo {
-        private final String appName;
-        private final String packageName;
-        private final Drawable appIcon;
+    // --- App rows ---
+    // Creates and binds the rows of both lists. Rows are inflated ahead of time on the
+    // AsyncLayoutInflater thread into the shared RecycledViewPool, carry a stable ID per app key
+    // (so a work app and its personal twin stay distinct) and share a single click listener.
+    static final class AppRows {
+        final boolean legacyRendering;
+        int pendingPrewarms; // Rows still being inflated off the main thread
+        int mainThreadInflations; // Rows the prewarmed pool did not cover, inflated inside a frame
+        private final AppPickerActivity activity;
+        private final RecyclerView recyclerView;
+        private final IconCache iconCache;
+        private final ArrayDeque<View> prewarmedRows = new ArrayDeque<>(); // Handed to onCreateViewHolder
+        private final Map<String, Long> stableIds = new HashMap<>();
+        private final View.OnClickListener onRowClick;
 
-        public AppInfo(String appName, String packageName, Drawable appIcon) {
-            this.appName = appName;
-            this.packageName = packageName;
-            this.appIcon = appIcon;
+        AppRows(AppPickerActivity activity, RecyclerView recyclerView, IconCache iconCache, boolean legacyRendering) {
+            this.activity = activity;
+            this.recyclerView = recyclerView;
+            this.iconCache = iconCache;
+            this.legacyRendering = legacyRendering;
+            this.onRowClick = v -> {
+                AppInfo app = ((AppViewHolder) recyclerView.getChildViewHolder(v)).app;
+                if (app != null) {
+                    activity.onAppPicked(app);
+                }
+            };
         }
 
-        public String getAppName() {
-            return appName;
+        // Main thread only: AsyncLayoutInflater delivers each row back on it
+        void prewarm(RecyclerView.Adapter<AppViewHolder> adapter, int count) {
+            recyclerView.getRecycledViewPool().setMaxRecycledViews(VIEW_TYPE_APP, count);
+            AsyncLayoutInflater inflater = new AsyncLayoutInflater(activity);
+            pendingPrewarms += count;
+            for (int i = 0; i < count; i++) {
+                inflater.inflate(R.layout.app_list_item, recyclerView, (view, resid, parent) -> {
+                    pendingPrewarms--;
+                    prewarmedRows.add(view);
+                    // createViewHolder stamps the view type the pool is keyed on
+                    recyclerView.getRecycledViewPool().putRecycledView(adapter.createViewHolder(recyclerView, VIEW_TYPE_APP));
+                });
+            }
         }
 
-        public String getPackageName() {
-            return packageName;
+        AppViewHolder create(ViewGroup parent) {
+            View view = prewarmedRows.poll();
+            if (view == null) {
+                view = LayoutInflater.from(parent.getContext()).inflate(R.layout.app_list_item, parent, false);
+                mainThreadInflations++;
+            }
+            AppViewHolder holder = new AppViewHolder(view);
+            if (!legacyRendering) {
+                view.setOnClickListener(onRowClick);
+            }
+            return holder;
         }
 
-        public Drawable getAppIcon() {
-            return appIcon;
+        void bind(AppViewHolder holder, AppInfo app) {
+            holder.bind(app, iconCache);
+            if (legacyRendering) {
+                holder.itemView.setOnClickListener(v -> activity.onAppPicked(app));
+            }
+        }
+
+        long stableId(AppInfo app) {
+            Long id = stableIds.get(app.getKey());
+            if (id == null) {
+                id = (long) stableIds.size();
+                stableIds.put(app.getKey(), id);
+            }
+            return id;
         }
     }
 
     // --- RecyclerView Adapter ---
-    private static class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewHolder> {
+    // Rows are updated through DiffUtil, so typing or a new catalog batch only rebinds changed rows.
+    private static class AppListAdapter extends ListAdapter<AppInfo, AppViewHolder> {
+
+        private final AppRows rows;
+        private final UsageStore usageStore;
+        private final SuggestedSection suggestedSection;
+        private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+        private final AtomicInteger queryGeneration = new AtomicInteger(); // Bumped per keystroke, stale searches stop
+        private List<AppInfo> catalog = new ArrayList<>(); // Complete sorted list, replaced (never mutated) on change
+        private final Map<String, AppInfo> catalogByKey = new HashMap<>(); // Resolves the suggested keys
+        private String currentQuery = "";
 
-        private final List<AppInfo> originalAppList; // The complete, unfiltered list
-        private final List<AppInfo> filteredAppList; // The list currently displayed in RecyclerView
-        private final Context context;
+        // Only touched on the search thread
+        private AppSearchIndex searchIndex;
+        private List<AppInfo> indexedCatalog;
+
+        public AppListAdapter(AppRows rows, UsageStore usageStore, SuggestedSection suggestedSection) {
+            super(DIFF_CALLBACK);
+            this.rows = rows;
+            this.usageStore = usageStore;
+            this.suggestedSection = suggestedSection;
+            setHasStableIds(!rows.legacyRendering);
+        }
 
-        public AppListAdapter(Context context, List<AppInfo> appList) {
-            this.context = context;
-            this.originalAppList = new ArrayList<>(appList); // Copy the full list
-            this.filteredAppList = new ArrayList<>(appList); // Initially, filtered list is also full list
+        @Override
+        public int getItemViewType(int position) {
+            return VIEW_TYPE_APP;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return rows.stableId(getItem(position));
         }
 
         @NonNull
         @Override
         public AppViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.app_list_item, parent, false);
-            return new AppViewHolder(view);
+            return rows.create(parent);
         }
 
         @Override
         public void onBindViewHolder(AppViewHolder holder, int position) {
-            AppInfo app = filteredAppList.get(position); // Bind from the filtered list
-            holder.appIcon.setImageDrawable(app.getAppIcon());
-            holder.appName.setText(app.getAppName());
-            holder.packageName.setText(app.getPackageName());
-
-            holder.itemView.setOnClickListener(v -> {
-                AppPrefs.saveTargetPackage(context, app.getPackageName());
-                Toast.makeText(context, "Set " + app.getAppName() + " as launch target.", Toast.LENGTH_SHORT).show();
-                ((AppPickerActivity) context).finish(); // Close the activity
-            });
+            rows.bind(holder, getItem(position));
         }
 
         @Override
-        public int getItemCount() {
-            return filteredAppList.size(); // Count from the filtered list
+        public void onViewRecycled(@NonNull AppViewHolder holder) {
+            super.onViewRecycled(holder);
+            holder.recycle();
+        }
+
+        public int getCatalogSize() {
+            return catalog.size();
+        }
+
+        // Merges a sorted batch from the loader into the sorted catalog
+        public void addApps(List<AppInfo> sortedBatch) {
+            catalog = mergeSorted(catalog, sortedBatch);
+            for (AppInfo app : sortedBatch) {
+                catalogByKey.put(app.getKey(), app);
+            }
+            filter(currentQuery);
+        }
+
+        // Replaces updated apps and drops removed ones; keys tell a work app from its personal twin
+        public void applyChanges(List<AppInfo> sortedUpdates, Set<String> removedKeys) {
+            Set<String> replaced = new HashSet<>(removedKeys);
+            for (AppInfo app : sortedUpdates) {
+                replaced.add(app.getKey());
+            }
+            List<AppInfo> kept = new ArrayList<>(catalog.size());
+            for (AppInfo app : catalog) {
+                if (!replaced.contains(app.getKey())) {
+                    kept.add(app);
+                }
+            }
+            catalog = mergeSorted(kept, sortedUpdates);
+            catalogByKey.keySet().removeAll(removedKeys);
+            for (AppInfo app : sortedUpdates) {
+                catalogByKey.put(app.getKey(), app);
+            }
+            filter(currentQuery);
+        }
+
+        private static List<AppInfo> mergeSorted(List<AppInfo> sorted, List<AppInfo> sortedBatch) {
+            List<AppInfo> merged = new ArrayList<>(sorted.size() + sortedBatch.size());
+            int i = 0;
+            int j = 0;
+            while (i < sorted.size() && j < sortedBatch.size()) {
+                if (AppInfo.BY_NAME.compare(sorted.get(i), sortedBatch.get(j)) <= 0) {
+                    merged.add(sorted.get(i++));
+                } else {
+                    merged.add(sortedBatch.get(j++));
+                }
+            }
+            merged.addAll(sorted.subList(i, sorted.size()));
+            merged.addAll(sortedBatch.subList(j, sortedBatch.size()));
+            return merged;
         }
 
-        // --- New Filter Method ---
-        @SuppressLint("NotifyDataSetChanged")
+        // --- Filter Method ---
+        // Ranked search runs on a background thread against a precomputed index; only the
+        // newest query's results are submitted. Empty and one-letter queries also show the
+        // suggested apps right away, from the usage store's precomputed top K.
         public void filter(String query) {
-            filteredAppList.clear();
-            if (query.isEmpty()) {
-                filteredAppList.addAll(originalAppList);
-            } else {
-                query = query.toLowerCase(); // Case-insensitive search
-                for (AppInfo app : originalAppList) {
-                    if (app.getAppName().toLowerCase().contains(query)) {
-                        filteredAppList.add(app);
+            currentQuery = query;
+            int generation = queryGeneration.incrementAndGet();
+            List<AppInfo> snapshot = catalog;
+            String trimmed = query.trim();
+            suggestedSection.show(trimmed.length() <= 1 ? suggestedApps(trimmed) : Collections.emptyList());
+            if (trimmed.isEmpty()) {
+                submitList(snapshot);
+                return;
+            }
+            searchExecutor.execute(() -> {
+                if (generation != queryGeneration.get()) {
+                    return; // A newer keystroke is already queued
+                }
+                if (indexedCatalog != snapshot) {
+                    searchIndex = AppSearchIndex.build(snapshot);
+                    indexedCatalog = snapshot;
+                }
+                List<AppInfo> results = searchIndex.search(query, () -> generation != queryGeneration.get());
+                if (results == null) {
+                    return;
+                }
+                mainHandler.post(() -> {
+                    if (generation == queryGeneration.get()) {
+                        submitList(results);
                     }
+                });
+            });
+        }
+
+        // The top K that are installed, most used first; a letter keeps those it matches
+        private List<AppInfo> suggestedApps(String letter) {
+            List<AppInfo> apps = new ArrayList<>();
+            for (String key : usageStore.topKeys()) {
+                AppInfo app = catalogByKey.get(key);
+                if (app != null) {
+                    apps.add(app);
                 }
             }
-            notifyDataSetChanged(); // Tell the RecyclerView to refresh its view
+            if (letter.isEmpty() || apps.isEmpty()) {
+                return apps;
+            }
+            Set<AppInfo> matches = new HashSet<>(AppSearchIndex.build(apps).search(letter, () -> false));
+            List<AppInfo> matching = new ArrayList<>(matches.size());
+            for (AppInfo app : apps) {
+                if (matches.contains(app)) {
+                    matching.add(app);
+                }
+            }
+            return matching;
+        }
+
+        public void shutdown() {
+            queryGeneration.incrementAndGet();
+            searchExecutor.shutdownNow();
+            mainHandler.removeCallbacksAndMessages(null);
+        }
+
+    }
+
+    // Shared by the suggested and the full list
+    static class AppViewHolder extends RecyclerView.ViewHolder {
+        ImageView appIcon;
+        TextView appName;
+        TextView packageName;
+        AppInfo app; // Bound app, read by the shared click listener
+        String iconKey; // Icon the row currently wants
+        Future<?> iconLoad; // In-flight icon load, cancelled when the row is recycled or rebound
+
+        public AppViewHolder(View itemView) {
+            super(itemView);
+            appIcon = itemView.findViewById(R.id.app_icon);
+            appName = itemView.findViewById(R.id.app_name);
+            packageName = itemView.findViewById(R.id.package_name);
         }
 
-        static class AppViewHolder extends RecyclerView.ViewHolder {
-            ImageView appIcon;
-            TextView appName;
-            TextView packageName;
+        void bind(AppInfo app, IconCache iconCache) {
+            this.app = app;
+            bindIcon(app, iconCache);
+            appName.setText(app.getAppName());
+            packageName.setText(app.getPackageName());
+        }
+
+        void recycle() {
+            app = null;
+            cancelIconLoad();
+            appIcon.setImageDrawable(null);
+        }
+
+        private void bindIcon(AppInfo app, IconCache iconCache) {
+            cancelIconLoad();
+            String key = app.getIconKey();
+            iconKey = key;
+            Bitmap cached = iconCache.getCached(key);
+            if (cached != null) {
+                appIcon.setImageBitmap(cached);
+                return;
+            }
+            appIcon.setImageDrawable(null);
+            iconLoad = iconCache.load(key, app.getPackageName(), app.getUserSerial(), (loadedKey, icon) -> {
+                if (loadedKey.equals(iconKey)) { // The row may have been rebound meanwhile
+                    appIcon.setImageBitmap(icon);
+                    iconLoad = null;
+                }
+            });
+        }
 
-            public AppViewHolder(View itemView) {
-                super(itemView);
-                appIcon = itemView.findViewById(R.id.app_icon);
-                appName = itemView.findViewById(R.id.app_name);
-                packageName = itemView.findViewById(R.id.package_name);
+        private void cancelIconLoad() {
+            if (iconLoad != null) {
+                iconLoad.cancel(true);
+                iconLoad = null;
             }
+            iconKey = null;
         }
     }
 }
\ No newline at end of file
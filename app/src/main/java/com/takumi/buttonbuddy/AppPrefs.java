@@ -2,21 +2,166 @@ package com.takumi.buttonbuddy;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
 
 public class AppPrefs {
+    private static final String TAG = "AppPrefs";
     private static final String PREFS_NAME = "ButtonBuddyPrefs";
-    private static final String KEY_TARGET_PACKAGE = "target_package";
+    private static final String CONFIG_FILE_NAME = "bindings.cfg";
+    private static final String USAGE_FILE_NAME = "usage.bin";
+    static final int SUGGESTED_APP_COUNT = 5; // Size of the picker's "Suggested" section
+    private static final String LEGACY_KEY_BINDINGS = "bindings"; // Bindings lived in the prefs before ConfigStore
+    private static final String LEGACY_KEY_TARGET_PACKAGE = "target_package"; // Single target, before per-app profiles
+    private static final String KEY_METRICS_ENABLED = "metrics_enabled";
     static final String DEFAULT_TARGET_PACKAGE = "com.google.android.apps.walletnfcrel"; // Default to Google Wallet
 
-    public static void saveTargetPackage(Context context, String packageName) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString(KEY_TARGET_PACKAGE, packageName);
-        editor.apply();
+    public interface OnBindingsChangedListener {
+        void onBindingsChanged(BindingProfiles profiles);
+    }
+
+    // Bindings live in ConfigStore's binary file; the prefs only keep the metrics flag
+    private static volatile ConfigStore configStore;
+    private static volatile UsageStore usageStore;
+    private static Handler mainHandler;
+    private static boolean metricsToggled; // Guarded by AppPrefs.class; a toggle beats a late load
+    private static final CopyOnWriteArrayList<OnBindingsChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static BindingProfiles getProfiles(Context context) {
+        return ensureLoaded(context).get();
     }
 
+    /** Applies {@code edit} to the latest profiles, so concurrent edits are never lost. */
+    public static void updateProfiles(Context context, UnaryOperator<BindingProfiles> edit) {
+        notifyListeners(ensureLoaded(context).update(edit));
+    }
+
+    /** The default volume-down long-press target, used whenever no per-app profile applies. */
     public static String getTargetPackage(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getString(KEY_TARGET_PACKAGE, DEFAULT_TARGET_PACKAGE);
+        String target = getProfiles(context).get(null, GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS);
+        return target != null ? target : "";
+    }
+
+    public static void saveTargetPackage(Context context, String packageName) {
+        updateProfiles(context, profiles -> profiles.with(null,
+                GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS, packageName));
+    }
+
+    // Off by default in release builds; read once when the service starts, and off the main
+    // thread through loadMetricsEnabled for the diagnostics screen
+    public static boolean isMetricsEnabled(Context context) {
+        return getPrefs(context).getBoolean(KEY_METRICS_ENABLED, BuildConfig.DEBUG);
+    }
+
+    public static void setMetricsEnabled(Context context, boolean enabled) {
+        getPrefs(context).edit().putBoolean(KEY_METRICS_ENABLED, enabled).apply();
+        synchronized (AppPrefs.class) {
+            metricsToggled = true;
+            MetricsRecorder.get().setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Applies the stored diagnostics flag to MetricsRecorder, unless it was toggled in the
+     * meantime. Reads the prefs file on first use, so call it on a background thread.
+     */
+    static void loadMetricsEnabled(Context context) {
+        boolean enabled = isMetricsEnabled(context);
+        synchronized (AppPrefs.class) {
+            if (!metricsToggled) {
+                MetricsRecorder.get().setEnabled(enabled);
+            }
+        }
+    }
+
+    /** Decayed pick and launch counts per app key, shared by the picker and the service. */
+    static UsageStore getUsageStore(Context context) {
+        UsageStore store = usageStore;
+        if (store != null) {
+            return store;
+        }
+        synchronized (AppPrefs.class) {
+            if (usageStore == null) {
+                store = new UsageStore(new File(context.getApplicationContext().getFilesDir(), USAGE_FILE_NAME),
+                        Executors.newSingleThreadExecutor(), SUGGESTED_APP_COUNT);
+                store.load();
+                usageStore = store;
+            }
+            return usageStore;
+        }
+    }
+
+    public static void addOnBindingsChangedListener(Context context, OnBindingsChangedListener listener) {
+        ensureLoaded(context);
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeOnBindingsChangedListener(OnBindingsChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // Listeners always ran on the main thread (SharedPreferences delivered them there); keep that
+    private static void notifyListeners(BindingProfiles profiles) {
+        mainHandler.post(() -> {
+            for (OnBindingsChangedListener listener : listeners) {
+                listener.onBindingsChanged(profiles);
+            }
+        });
+    }
+
+    private static ConfigStore ensureLoaded(Context context) {
+        ConfigStore store = configStore;
+        if (store != null) {
+            return store;
+        }
+        synchronized (AppPrefs.class) {
+            if (configStore == null) {
+                Context appContext = context.getApplicationContext();
+                mainHandler = new Handler(Looper.getMainLooper());
+                store = new ConfigStore(new File(appContext.getFilesDir(), CONFIG_FILE_NAME),
+                        Executors.newSingleThreadExecutor());
+                store.load(new PrefsLegacySource(getPrefs(appContext)));
+                if (store.isFallback()) {
+                    Log.w(TAG, CONFIG_FILE_NAME + " is unreadable; using defaults until the next edit moves it aside");
+                }
+                configStore = store;
+            }
+            return configStore;
+        }
+    }
+
+    // First run, or an install that still keeps its bindings (or only the single target) in the prefs
+    private static final class PrefsLegacySource implements ConfigStore.LegacySource {
+        private final SharedPreferences prefs;
+
+        PrefsLegacySource(SharedPreferences prefs) {
+            this.prefs = prefs;
+        }
+
+        @Override
+        public BindingProfiles load() {
+            String encoded = prefs.getString(LEGACY_KEY_BINDINGS, null);
+            if (encoded != null) {
+                return BindingProfiles.decode(encoded);
+            }
+            String legacyTarget = prefs.getString(LEGACY_KEY_TARGET_PACKAGE, DEFAULT_TARGET_PACKAGE);
+            return BindingProfiles.EMPTY.with(null,
+                    GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS, legacyTarget);
+        }
+
+        @Override
+        public void clear() {
+            prefs.edit().remove(LEGACY_KEY_BINDINGS).remove(LEGACY_KEY_TARGET_PACKAGE).apply();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,163 @@
+package com.takumi.buttonbuddy;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Precomputed search data for the picker: accent-folded lower-case names, word starts,
+ * initials ("gw" for Google Wallet) and package names. Built once per catalog change, so a
+ * keystroke only compares precomputed strings. Immutable and safe to query from any thread.
+ */
+final class AppSearchIndex {
+
+    // Higher is better; ties keep the catalog's alphabetical order
+    static final int SCORE_EXACT = 100;
+    static final int SCORE_NAME_PREFIX = 90;
+    static final int SCORE_WORD_PREFIX = 80;
+    static final int SCORE_ALL_WORDS = 75;
+    static final int SCORE_INITIALS = 70;
+    static final int SCORE_SUBSTRING = 50;
+    static final int SCORE_PACKAGE_SEGMENT = 35;
+    static final int SCORE_PACKAGE = 30;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final List<AppInfo> apps;
+    private final String[] names;
+    private final String[] packages;
+    private final String[] initials;
+    private final int[][] wordStarts;
+
+    private AppSearchIndex(List<AppInfo> apps) {
+        int size = apps.size();
+        this.apps = apps;
+        this.names = new String[size];
+        this.packages = new String[size];
+        this.initials = new String[size];
+        this.wordStarts = new int[size][];
+        int[] starts = new int[64];
+        for (int i = 0; i < size; i++) {
+            AppInfo app = apps.get(i);
+            String name = normalize(app.getAppName());
+            names[i] = name;
+            packages[i] = app.getPackageName().toLowerCase(Locale.ROOT);
+
+            int count = 0;
+            StringBuilder initialsBuilder = new StringBuilder();
+            for (int c = 0; c < name.length(); c++) {
+                if (Character.isLetterOrDigit(name.charAt(c))
+                        && (c == 0 || !Character.isLetterOrDigit(name.charAt(c - 1)))) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = c;
+                    initialsBuilder.append(name.charAt(c));
+                }
+            }
+            wordStarts[i] = Arrays.copyOf(starts, count);
+            initials[i] = initialsBuilder.toString();
+        }
+    }
+
+    /** {@code sortedApps} must already be in display order; it is not copied. */
+    static AppSearchIndex build(List<AppInfo> sortedApps) {
+        return new AppSearchIndex(sortedApps);
+    }
+
+    int size() {
+        return apps.size();
+    }
+
+    /**
+     * Ranked matches for {@code query}, or null if {@code cancelled} turned true midway
+     * (a newer keystroke made this query stale).
+     */
+    List<AppInfo> search(String query, BooleanSupplier cancelled) {
+        String normalized = normalize(query).trim();
+        if (normalized.isEmpty()) {
+            return new ArrayList<>(apps);
+        }
+        String[] tokens = normalized.split("\\s+");
+
+        // Packs (inverted score, position) into one long so ranking needs no boxing
+        long[] ranked = new long[apps.size()];
+        int matches = 0;
+        for (int i = 0; i < apps.size(); i++) {
+            if ((i & 255) == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            int score = tokens.length == 1 ? score(i, normalized) : scoreTokens(i, tokens);
+            if (score > 0) {
+                ranked[matches++] = ((long) (SCORE_EXACT - score) << 32) | i;
+            }
+        }
+        Arrays.sort(ranked, 0, matches);
+
+        List<AppInfo> results = new ArrayList<>(matches);
+        for (int m = 0; m < matches; m++) {
+            results.add(apps.get((int) ranked[m]));
+        }
+        return results;
+    }
+
+    int score(int position, String query) {
+        String name = names[position];
+        if (name.equals(query)) {
+            return SCORE_EXACT;
+        }
+        if (name.startsWith(query)) {
+            return SCORE_NAME_PREFIX;
+        }
+        for (int start : wordStarts[position]) {
+            if (name.startsWith(query, start)) {
+                return SCORE_WORD_PREFIX;
+            }
+        }
+        if (query.length() > 1 && initials[position].startsWith(query)) {
+            return SCORE_INITIALS;
+        }
+        if (name.contains(query)) {
+            return SCORE_SUBSTRING;
+        }
+        String packageName = packages[position];
+        int at = packageName.indexOf(query);
+        if (at >= 0) {
+            return at == 0 || packageName.charAt(at - 1) == '.' ? SCORE_PACKAGE_SEGMENT : SCORE_PACKAGE;
+        }
+        return 0;
+    }
+
+    // "goo wal": every token has to start one of the words
+    private int scoreTokens(int position, String[] tokens) {
+        String name = names[position];
+        for (String token : tokens) {
+            boolean found = false;
+            for (int start : wordStarts[position]) {
+                if (name.startsWith(token, start)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return 0;
+            }
+        }
+        return SCORE_ALL_WORDS;
+    }
+
+    /** Lower-case with accents folded away, so "cafe" also finds the accented spelling. */
+    static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) >= 0x80) { // Only pay for Unicode normalization when needed
+                return COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return lower;
+    }
+}
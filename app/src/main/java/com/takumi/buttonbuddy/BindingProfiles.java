@@ -0,0 +1,266 @@
+package com.takumi.buttonbuddy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What each gesture launches, optionally depending on the app in front: a default row plus
+ * one row per foreground package, each indexed by (key, gesture). A foreground row only
+ * overrides the gestures it sets.
+ *
+ * Immutable; edits return a new table, so the gesture thread can read a published instance
+ * without locking. {@link #resolve} is one HashMap lookup on an already-hashed String plus two
+ * array reads, and does not allocate.
+ */
+final class BindingProfiles {
+
+    private static final int SLOTS = 2 * GestureEngine.GESTURE_COUNT; // Volume down, then volume up
+
+    static final BindingProfiles EMPTY = new BindingProfiles(new String[SLOTS], Collections.emptyMap());
+
+    private final String[] defaults;
+    private final Map<String, String[]> byForeground;
+    private final Set<String> targets; // Every package some gesture can launch, for prewarming
+
+    private BindingProfiles(String[] defaults, Map<String, String[]> byForeground) {
+        this.defaults = defaults;
+        this.byForeground = byForeground;
+        Set<String> targets = new HashSet<>();
+        collectTargets(defaults, targets);
+        for (String[] row : byForeground.values()) {
+            collectTargets(row, targets);
+        }
+        this.targets = Collections.unmodifiableSet(targets);
+    }
+
+    private static void collectTargets(String[] row, Set<String> into) {
+        for (String target : row) {
+            if (target != null) {
+                into.add(target);
+            }
+        }
+    }
+
+    /** Index into a row, or -1 for keys that cannot be bound. */
+    static int slotOf(int keyCode, int gesture) {
+        if (gesture < 0 || gesture >= GestureEngine.GESTURE_COUNT) {
+            return -1;
+        }
+        if (keyCode == GestureEngine.KEYCODE_VOLUME_DOWN) {
+            return gesture;
+        }
+        if (keyCode == GestureEngine.KEYCODE_VOLUME_UP) {
+            return GestureEngine.GESTURE_COUNT + gesture;
+        }
+        return -1;
+    }
+
+    /**
+     * Package to launch for a gesture while {@code foregroundPackage} is in front (null when
+     * unknown), falling back to the default binding. Null if the gesture is unbound.
+     */
+    String resolve(String foregroundPackage, int keyCode, int gesture) {
+        int slot = slotOf(keyCode, gesture);
+        if (slot < 0) {
+            return null;
+        }
+        if (foregroundPackage != null) {
+            String[] row = byForeground.get(foregroundPackage);
+            if (row != null && row[slot] != null) {
+                return row[slot];
+            }
+        }
+        return defaults[slot];
+    }
+
+    /** The binding stored for exactly this foreground package (null = default row), no fallback. */
+    String get(String foregroundPackage, int keyCode, int gesture) {
+        int slot = slotOf(keyCode, gesture);
+        if (slot < 0) {
+            return null;
+        }
+        String[] row = foregroundPackage == null ? defaults : byForeground.get(foregroundPackage);
+        return row != null ? row[slot] : null;
+    }
+
+    /** A copy with one binding set, or removed when {@code target} is null or empty. */
+    BindingProfiles with(String foregroundPackage, int keyCode, int gesture, String target) {
+        int slot = slotOf(keyCode, gesture);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Key " + keyCode + " / gesture " + gesture + " cannot be bound");
+        }
+        String value = target == null || target.isEmpty() ? null : target;
+        String[] newDefaults = defaults;
+        Map<String, String[]> newByForeground = byForeground;
+        if (foregroundPackage == null) {
+            newDefaults = defaults.clone();
+            newDefaults[slot] = value;
+        } else {
+            newByForeground = new HashMap<>(byForeground);
+            String[] row = byForeground.get(foregroundPackage);
+            row = row != null ? row.clone() : new String[SLOTS];
+            row[slot] = value;
+            if (isEmpty(row)) {
+                newByForeground.remove(foregroundPackage);
+            } else {
+                newByForeground.put(foregroundPackage, row);
+            }
+        }
+        return new BindingProfiles(newDefaults, newByForeground);
+    }
+
+    /** A copy without any per-app bindings. */
+    BindingProfiles withoutForegroundProfiles() {
+        return new BindingProfiles(defaults, Collections.emptyMap());
+    }
+
+    private static boolean isEmpty(String[] row) {
+        for (String target : row) {
+            if (target != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** True when some gesture depends on the foreground app, i.e. window events are needed. */
+    boolean hasForegroundProfiles() {
+        return !byForeground.isEmpty();
+    }
+
+    Set<String> foregroundPackages() {
+        return Collections.unmodifiableSet(byForeground.keySet());
+    }
+
+    Set<String> targets() {
+        return targets;
+    }
+
+    /** True if any row binds this key and gesture, i.e. the engine has to recognize it. */
+    boolean isBound(int keyCode, int gesture) {
+        int slot = slotOf(keyCode, gesture);
+        if (slot < 0) {
+            return false;
+        }
+        if (defaults[slot] != null) {
+            return true;
+        }
+        for (String[] row : byForeground.values()) {
+            if (row[slot] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // One "foreground<TAB>keyCode<TAB>gesture<TAB>target" line per binding; the default row has
+    // an empty foreground. Package names never contain tabs or newlines.
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+        encodeRow(sb, "", defaults);
+        for (Map.Entry<String, String[]> entry : byForeground.entrySet()) {
+            encodeRow(sb, entry.getKey(), entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static void encodeRow(StringBuilder sb, String foregroundPackage, String[] row) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (row[slot] == null) {
+                continue;
+            }
+            int keyCode = slot < GestureEngine.GESTURE_COUNT ? GestureEngine.KEYCODE_VOLUME_DOWN : GestureEngine.KEYCODE_VOLUME_UP;
+            sb.append(foregroundPackage).append('\t')
+                    .append(keyCode).append('\t')
+                    .append(slot % GestureEngine.GESTURE_COUNT).append('\t')
+                    .append(row[slot]).append('\n');
+        }
+    }
+
+    // Binary form for ConfigStore: row count, then per row its foreground package (empty for the
+    // default row), its binding count and (slot, target) pairs. Rows are rebuilt directly on read
+    // instead of through with(), so loading stays linear in the number of bindings.
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(1 + byForeground.size());
+        writeRow(out, "", defaults);
+        for (Map.Entry<String, String[]> entry : byForeground.entrySet()) {
+            writeRow(out, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void writeRow(DataOutput out, String foregroundPackage, String[] row) throws IOException {
+        out.writeUTF(foregroundPackage);
+        int count = 0;
+        for (String target : row) {
+            if (target != null) {
+                count++;
+            }
+        }
+        out.writeByte(count);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (row[slot] != null) {
+                out.writeByte(slot);
+                out.writeUTF(row[slot]);
+            }
+        }
+    }
+
+    /** Reads {@link #writeTo} output; throws IOException if it is malformed. */
+    static BindingProfiles readFrom(DataInput in) throws IOException {
+        int rows = in.readInt();
+        if (rows < 1) {
+            throw new IOException("Bad row count " + rows);
+        }
+        String[] defaults = null;
+        Map<String, String[]> byForeground = new HashMap<>(rows * 2);
+        for (int i = 0; i < rows; i++) {
+            String foregroundPackage = in.readUTF();
+            String[] row = new String[SLOTS];
+            int count = in.readUnsignedByte();
+            for (int j = 0; j < count; j++) {
+                int slot = in.readUnsignedByte();
+                if (slot >= SLOTS) {
+                    throw new IOException("Bad slot " + slot);
+                }
+                row[slot] = in.readUTF();
+            }
+            if (foregroundPackage.isEmpty()) {
+                defaults = row;
+            } else if (!isEmpty(row)) {
+                byForeground.put(foregroundPackage, row);
+            }
+        }
+        return new BindingProfiles(defaults != null ? defaults : new String[SLOTS],
+                byForeground.isEmpty() ? Collections.emptyMap() : byForeground);
+    }
+
+    /** Parses {@link #encode()} output; malformed lines are skipped. */
+    static BindingProfiles decode(String encoded) {
+        BindingProfiles profiles = EMPTY;
+        if (encoded == null) {
+            return profiles;
+        }
+        for (String line : encoded.split("\n")) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 4) {
+                continue;
+            }
+            try {
+                int keyCode = Integer.parseInt(fields[1]);
+                int gesture = Integer.parseInt(fields[2]);
+                if (slotOf(keyCode, gesture) >= 0) {
+                    profiles = profiles.with(fields[0].isEmpty() ? null : fields[0], keyCode, gesture, fields[3]);
+                }
+            } catch (NumberFormatException e) {
+                // Skip the line
+            }
+        }
+        return profiles;
+    }
+}
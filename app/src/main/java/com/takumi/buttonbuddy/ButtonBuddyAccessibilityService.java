@@ -4,84 +4,284 @@ import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Intent;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.inputmethod.InputMethodInfo;
+import android.view.inputmethod.InputMethodManager;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ButtonBuddyAccessibilityService extends AccessibilityService {
 
     private static final String TAG = "ButtonBuddyService";
     private static final long VOLUME_DOWN_HOLD_DURATION = 1000; // 1 second in milliseconds
 
-    // No need for currentTargetPackage as a member variable if we fetch it on every key event
-
+    // Gesture timing runs on its own thread, so main-thread work in the process
+    // (activity inflation, status checks, GC pauses on the UI) cannot delay the hold threshold.
+    // The engine and the launch preparer's arming are only touched on that thread; actions run on
+    // the ActionPipeline.
+    private static final int MSG_KEY_EVENT = 1;
+    private static final int MSG_RESET = 2;
+    private HandlerThread gestureThread;
     private Handler handler;
-    private Runnable longPressRunnable;
-    private boolean appLaunchedOnLongPress = false; // Flag to ensure app is launched only once per long press
+    private GestureEngine gestureEngine;
+    private final Runnable gestureTimerRunnable = this::onGestureTimer; // Single Runnable for every gesture deadline
+    private volatile long scheduledDeadline = GestureEngine.NO_DEADLINE; // Posted deadline; written by the gesture thread only
+    private KeyEventTrace trace; // Recording started through dumpsys, debug builds only
+    private volatile boolean tracing; // Debug builds: the fast path forwards everything while recording
+    private int processedKeyEvents; // Gesture thread only
+
+    // Fast path state for onKeyEvent. Key codes some binding uses, one bit each; replaced, never
+    // mutated. 8 words cover 512 key codes, more than KeyEvent defines.
+    private static final int KEY_BITSET_WORDS = 8;
+    private volatile long[] boundKeys = new long[KEY_BITSET_WORDS];
+    private int forwardedKeyEvents; // Main thread only
+    // forwardedKeyEvents as of the engine last becoming idle, or -1 while a gesture is in progress
+    private volatile int gestureIdleAfter;
+
+    // Flip to true to measure the old typeAllMask subscription against the minimal one
+    private static final boolean LEGACY_EVENT_SUBSCRIPTION = false;
+
+    private LaunchIntentCache launchIntentCache;
+    private LaunchPreparer launchPreparer;
+    private ExecutorService backgroundExecutor;
+    private GestureActions gestureActions;
+    private ActionPipeline actionPipeline; // Actions run here, off the gesture thread
+    private UsageStore usageStore; // Launches rank the picker's "Suggested" apps
+    private volatile Set<String> launchPackages = new HashSet<>(); // Every package some binding may launch
+    private final AppPrefs.OnBindingsChangedListener bindingsChangedListener = this::applyProfiles;
+    private volatile BindingProfiles profiles = BindingProfiles.EMPTY; // Published by the main thread, read on gestures
+    private final ForegroundAppTracker foregroundTracker = new ForegroundAppTracker();
+
+    private final EventDeliveryStats eventStats = new EventDeliveryStats();
+    private final MetricsRecorder metrics = MetricsRecorder.get();
+    private boolean connected = false;
+    private boolean windowStateEventsEnabled = false; // Turned on only by features that need the foreground app
 
     @Override
     public void onCreate() {
         super.onCreate();
-        handler = new Handler(Looper.getMainLooper());
-        longPressRunnable = () -> {
-            if (!appLaunchedOnLongPress) {
-                // Retrieve the latest target package when the long press timer completes
-                String packageToLaunch = AppPrefs.getTargetPackage(getApplicationContext()); // Fetch here!
-                Log.d(TAG, "Volume Down Button Held for 1+ second! Attempting to launch " + packageToLaunch);
-                launchTargetApplication(packageToLaunch);
-                appLaunchedOnLongPress = true;
+        metrics.setEnabled(AppPrefs.isMetricsEnabled(this));
+        gestureThread = new HandlerThread("ButtonBuddyGestures", Process.THREAD_PRIORITY_DISPLAY);
+        gestureThread.start();
+        handler = new Handler(gestureThread.getLooper(), this::handleGestureMessage);
+        gestureEngine = new GestureEngine(SystemClock::uptimeMillis, gestureListener);
+        gestureEngine.setTiming(GestureEngine.GESTURE_LONG_PRESS, VOLUME_DOWN_HOLD_DURATION);
+
+        // Resolve the targets up front so the gesture path does no prefs or PackageManager work
+        launchIntentCache = new LaunchIntentCache(this);
+        launchIntentCache.register(this::onLaunchIntentInvalidated);
+        backgroundExecutor = Executors.newSingleThreadExecutor();
+        launchPreparer = new LaunchPreparer(launchIntentCache, backgroundExecutor);
+        gestureActions = new GestureActions(this, launchPreparer, VOLUME_DOWN_HOLD_DURATION);
+        gestureActions.register();
+        actionPipeline = new ActionPipeline(2, 8, this::onActionFinished);
+        usageStore = AppPrefs.getUsageStore(this);
+        AppPrefs.addOnBindingsChangedListener(this, bindingsChangedListener);
+        applyProfiles(AppPrefs.getProfiles(this));
+    }
+
+    private void applyProfiles(BindingProfiles newProfiles) {
+        gestureActions.retainOnly(newProfiles.targets());
+        Set<String> packages = new HashSet<>();
+        for (String target : newProfiles.targets()) {
+            gestureActions.get(target).collectLaunchPackages(packages); // Parses every spec now, not on the gesture
+        }
+        for (String packageName : packages) {
+            launchIntentCache.prewarm(packageName);
+        }
+        launchPackages = packages;
+        profiles = newProfiles;
+        long[] keys = new long[KEY_BITSET_WORDS];
+        for (int keyCode : new int[] {KeyEvent.KEYCODE_VOLUME_DOWN, KeyEvent.KEYCODE_VOLUME_UP}) {
+            for (int gesture = 0; gesture < GestureEngine.GESTURE_COUNT; gesture++) {
+                if (newProfiles.isBound(keyCode, gesture)) {
+                    keys[keyCode >>> 6] |= 1L << keyCode;
+                }
             }
-        };
+        }
+        boundKeys = keys;
+        handler.post(() -> configureGestures(newProfiles));
+        // Window events are only worth receiving while some binding depends on the app in front
+        setWindowStateEventsEnabled(newProfiles.hasForegroundProfiles());
+    }
+
+    // Gesture thread: only bound gestures are recognized, so unbound ones cost nothing
+    private void configureGestures(BindingProfiles newProfiles) {
+        for (int keyCode : new int[] {KeyEvent.KEYCODE_VOLUME_DOWN, KeyEvent.KEYCODE_VOLUME_UP}) {
+            for (int gesture = 0; gesture < GestureEngine.GESTURE_COUNT; gesture++) {
+                gestureEngine.setGestureEnabled(keyCode, gesture, newProfiles.isBound(keyCode, gesture));
+            }
+        }
+        rescheduleGestureTimer();
+    }
+
+    private void onLaunchIntentInvalidated(String packageName) {
+        if (launchPackages.contains(packageName)) {
+            launchIntentCache.prewarm(packageName); // Re-resolve now rather than when the gesture fires
+        }
     }
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        // Log.d(TAG, "Accessibility Event: " + event.getEventType() + " - " + event.getPackageName());
-        // For production, you might want to be more selective about logging frequent events
+        eventStats.onAccessibilityEvent();
+        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            foregroundTracker.onWindowStateChanged(event.getPackageName());
+        }
     }
 
     @Override
     protected boolean onKeyEvent(KeyEvent event) {
+        long start = metrics.startNanos();
+        eventStats.onKeyEvent();
+        metrics.increment(MetricsRecorder.COUNTER_KEY_EVENTS);
+
+        // Fast path, one branch and no handler work: auto-repeats (the engine only acts on the
+        // first down) and keys no binding uses, unless a gesture is in progress that such a key
+        // would interrupt. Held keys repeat thousands of times a minute. While a trace records
+        // (debug builds only) everything goes through, so replays see the real input stream.
         int keyCode = event.getKeyCode();
+        if (!(BuildConfig.DEBUG && tracing)
+                && (event.getRepeatCount() != 0
+                        || ((boundKeys[(keyCode >>> 6) & (KEY_BITSET_WORDS - 1)] & (1L << keyCode)) == 0
+                                && gestureIdleAfter == forwardedKeyEvents))) {
+            metrics.increment(MetricsRecorder.COUNTER_KEY_EVENTS_SHORT_CIRCUITED);
+            metrics.recordSince(MetricsRecorder.HISTOGRAM_ON_KEY_EVENT, start);
+            return false;
+        }
+        forwardedKeyEvents++;
 
-        if (keyCode == KeyEvent.KEYCODE_VOLUME_DOWN) {
-            if (event.getAction() == KeyEvent.ACTION_DOWN) {
-                if (event.getRepeatCount() == 0) { // Ensure it's the initial press
-                    handler.postDelayed(longPressRunnable, VOLUME_DOWN_HOLD_DURATION);
-                    appLaunchedOnLongPress = false; // Reset flag for a new press cycle
-                    Log.i(TAG, "Volume Down Key Down - scheduling long press check.");
+        // Forwarded in a pooled Message without boxing: the event time travels as its age
+        // relative to the message's own timestamp
+        long now = SystemClock.uptimeMillis();
+        int age = (int) Math.min(Integer.MAX_VALUE, Math.max(0, now - event.getEventTime()));
+        int packed = (keyCode & 0xFFFF) | (event.getAction() & 0xFF) << 16
+                | Math.min(event.getRepeatCount(), 0x7F) << 24;
+        handler.sendMessageAtTime(Message.obtain(handler, MSG_KEY_EVENT, packed, age), now);
+        metrics.increment(MetricsRecorder.COUNTER_HANDLER_POSTS);
+        metrics.recordSince(MetricsRecorder.HISTOGRAM_ON_KEY_EVENT, start);
+        return false; // Return false to let other apps/system process the key event (e.g., adjust volume)
+    }
+
+    private boolean handleGestureMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_KEY_EVENT:
+                long start = metrics.startNanos();
+                long eventTime = msg.getWhen() - msg.arg2;
+                if (BuildConfig.DEBUG && trace != null) {
+                    trace.addEvent(msg.arg1 & 0xFFFF, (msg.arg1 >>> 16) & 0xFF, msg.arg1 >>> 24, eventTime);
                 }
-            } else if (event.getAction() == KeyEvent.ACTION_UP) {
-                handler.removeCallbacks(longPressRunnable);
-                Log.i(TAG, "Volume Down Key Up - canceling long press check.");
-                appLaunchedOnLongPress = false; // Reset for the next cycle
-            }
-        } else {
-            // If any other key is pressed, cancel the volume down long press check
-            handler.removeCallbacks(longPressRunnable);
-            appLaunchedOnLongPress = false; // Reset flag
+                gestureEngine.onKeyEvent(msg.arg1 & 0xFFFF, (msg.arg1 >>> 16) & 0xFF, msg.arg1 >>> 24, eventTime);
+                rescheduleGestureTimer();
+                processedKeyEvents++;
+                publishIdleState();
+                metrics.recordSince(MetricsRecorder.HISTOGRAM_EVENT_HANDLING, start);
+                return true;
+            case MSG_RESET:
+                gestureEngine.reset();
+                rescheduleGestureTimer();
+                publishIdleState();
+                return true;
+            default:
+                return false;
         }
-        return false; // Return false to let other apps/system process the key event (e.g., adjust volume)
     }
 
-    private void launchTargetApplication(String packageName) {
-        if (packageName == null || packageName.isEmpty()) {
-            Log.w(TAG, "No target package set or package name is empty. Cannot launch app.");
+    private void onGestureTimer() {
+        if (metrics.isEnabled()) {
+            // uptimeMillis and nanoTime share CLOCK_MONOTONIC on Android
+            metrics.recordMicros(MetricsRecorder.HISTOGRAM_TIMER_DRIFT, System.nanoTime() / 1000 - scheduledDeadline * 1000);
+        }
+        scheduledDeadline = GestureEngine.NO_DEADLINE;
+        gestureEngine.onTimer();
+        rescheduleGestureTimer();
+        publishIdleState();
+    }
+
+    // Once the engine is idle and has seen every forwarded event, onKeyEvent may drop unbound keys
+    private void publishIdleState() {
+        gestureIdleAfter = gestureEngine.isIdle() ? processedKeyEvents : -1;
+    }
+
+    // Keeps exactly one Runnable posted, at the engine's earliest deadline
+    private void rescheduleGestureTimer() {
+        long deadline = gestureEngine.nextDeadline();
+        if (deadline == scheduledDeadline) {
             return;
         }
+        handler.removeCallbacks(gestureTimerRunnable);
+        scheduledDeadline = deadline;
+        if (deadline != GestureEngine.NO_DEADLINE) {
+            handler.postAtTime(gestureTimerRunnable, deadline);
+            metrics.increment(MetricsRecorder.COUNTER_HANDLER_POSTS);
+        }
+    }
 
-        Intent launchIntent = getPackageManager().getLaunchIntentForPackage(packageName);
-        if (launchIntent != null) {
-            launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            try {
-                startActivity(launchIntent);
-                Log.d(TAG, "Successfully launched " + packageName);
-            } catch (Exception e) {
-                Log.e(TAG, "Error launching " + packageName + ": " + e.getMessage());
+    private final GestureEngine.Listener gestureListener = new GestureEngine.Listener() {
+        @Override
+        public void onGesture(int gesture, int keyCode, long eventTime) {
+            metrics.increment(MetricsRecorder.COUNTER_GESTURES);
+            if (BuildConfig.DEBUG && trace != null) {
+                trace.addGesture(gesture, keyCode, eventTime);
+            }
+            String spec = profiles.resolve(foregroundTracker.getForegroundPackage(), keyCode, gesture);
+            if (spec == null) {
+                return;
+            }
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Gesture " + gesture + " on key " + keyCode + " in " + foregroundTracker.getForegroundPackage()
+                        + ", running " + spec);
+            }
+            if (spec.isEmpty()) {
+                Log.w(TAG, "No target package set or package name is empty. Cannot launch app.");
+                metrics.increment(MetricsRecorder.COUNTER_LAUNCHES_FAILED);
+                return;
+            }
+            if (gesture == GestureEngine.GESTURE_LONG_PRESS) {
+                launchPreparer.onLongPress(keyCode); // Lets the launch below consume the prepared press
+            }
+            actionPipeline.submit(gestureActions.get(spec));
+        }
+
+        @Override
+        public void onLongPressArmed(int keyCode, long downTime, long deadline) {
+            // Get the launch ready during the hold, so only the threshold itself is user-visible
+            String spec = profiles.resolve(foregroundTracker.getForegroundPackage(), keyCode, GestureEngine.GESTURE_LONG_PRESS);
+            launchPreparer.prepare(keyCode, spec == null || spec.isEmpty() ? null : gestureActions.get(spec).launchPackage(), downTime);
+        }
+
+        @Override
+        public void onLongPressDisarmed(int keyCode) {
+            launchPreparer.cancel();
+        }
+    };
+
+    // Pipeline thread: a worker, or the watchdog for a rejected trigger
+    private void onActionFinished(GestureAction action, int outcome, long latencyNanos) {
+        if (outcome == ActionPipeline.OUTCOME_OK) {
+            metrics.recordMicros(MetricsRecorder.HISTOGRAM_LAUNCH, latencyNanos / 1000);
+            metrics.increment(MetricsRecorder.COUNTER_LAUNCHES_SUCCEEDED);
+            if (GestureAction.isAppLaunch(action.spec)) {
+                usageStore.record(action.spec, System.currentTimeMillis()); // Pipeline thread, never the key path
+            }
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Successfully ran " + action);
             }
         } else {
-            Log.e(TAG, "Could not find launch intent for package: " + packageName);
+            metrics.increment(MetricsRecorder.COUNTER_LAUNCHES_FAILED);
         }
     }
 
@@ -89,34 +289,188 @@ public class ButtonBuddyAccessibilityService extends AccessibilityService {
     public void onInterrupt() {
         Log.w(TAG, "ButtonBuddyAccessibilityService interrupted.");
         if (handler != null) {
-            handler.removeCallbacks(longPressRunnable);
+            handler.sendEmptyMessage(MSG_RESET);
         }
-        appLaunchedOnLongPress = false;
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
         if (handler != null) {
-            handler.removeCallbacks(longPressRunnable);
+            handler.removeCallbacksAndMessages(null);
+            gestureThread.quitSafely();
+        }
+        AppPrefs.removeOnBindingsChangedListener(bindingsChangedListener);
+        if (launchIntentCache != null) {
+            launchIntentCache.unregister();
+        }
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+        }
+        if (actionPipeline != null) {
+            actionPipeline.shutdown();
+        }
+        if (gestureActions != null) {
+            gestureActions.unregister();
         }
     }
 
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
-        AccessibilityServiceInfo info = new AccessibilityServiceInfo();
+        connected = true;
+        foregroundTracker.setIgnoredPackages(overlayPackages());
+        applyEventSubscription();
+        Log.d(TAG, "ButtonBuddyAccessibilityService connected successfully.");
+    }
 
-        info.flags = AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS | AccessibilityServiceInfo.FLAG_REQUEST_FILTER_KEY_EVENTS;
-        info.eventTypes = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+    // Packages whose windows sit on top of other apps and must not count as the foreground app
+    private Set<String> overlayPackages() {
+        Set<String> packages = new HashSet<>();
+        packages.add(getPackageName());
+        InputMethodManager imm = getSystemService(InputMethodManager.class);
+        if (imm != null) {
+            for (InputMethodInfo ime : imm.getEnabledInputMethodList()) {
+                packages.add(ime.getPackageName());
+            }
+        }
+        return packages;
+    }
 
+    @Override
+    public boolean onUnbind(Intent intent) {
+        connected = false;
+        Log.i(TAG, eventStats.describe(SystemClock.uptimeMillis()) + launchPreparer.describe());
+        return super.onUnbind(intent);
+    }
+
+    /**
+     * adb shell dumpsys activity service com.takumi.buttonbuddy/.ButtonBuddyAccessibilityService [enable|disable|reset]
+     *
+     * The volume-down long press can also be bound to any action spec (see {@link GestureAction}),
+     * globally or for one foreground app, which the picker UI only does for app launches:
+     * [bind &lt;package|default&gt; &lt;spec&gt;|unbind &lt;package|default&gt;]
+     *
+     * Debug builds can record the volume-key stream for the JVM replay harness with
+     * [trace start|trace stop]; other keys are recorded without their key code.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args != null && args.length > 0) {
+            switch (args[0]) {
+                case "enable":
+                    AppPrefs.setMetricsEnabled(this, true);
+                    break;
+                case "disable":
+                    AppPrefs.setMetricsEnabled(this, false);
+                    break;
+                case "reset":
+                    metrics.reset();
+                    break;
+                case "bind":
+                case "unbind":
+                    bindFromDump(writer, args);
+                    break;
+                case "trace":
+                    traceFromDump(writer, args);
+                    break;
+                default:
+                    writer.println("Unknown argument " + args[0] + ", expected enable, disable, reset, bind, unbind or trace");
+                    break;
+            }
+        }
+        writer.print(metrics.describe());
+        long deadline = scheduledDeadline;
+        writer.println("Gesture thread: " + (gestureThread != null ? gestureThread.getState() : "not started")
+                + ", next deadline " + (deadline == GestureEngine.NO_DEADLINE
+                ? "none" : "in " + (deadline - SystemClock.uptimeMillis()) + " ms"));
+        writer.print(eventStats.describe(SystemClock.uptimeMillis()));
+        writer.print(foregroundTracker.describe());
+        writer.print(launchPreparer != null ? launchPreparer.describe() : "");
+        writer.print(actionPipeline != null ? actionPipeline.describe() : "");
+    }
+
+    private void traceFromDump(PrintWriter writer, String[] args) {
+        if (!BuildConfig.DEBUG || handler == null) {
+            writer.println("Key event tracing is only available in debug builds");
+            return;
+        }
+        if (args.length > 1 && args[1].equals("start")) {
+            tracing = true;
+            handler.post(() -> trace = KeyEventTrace.of(gestureEngine, SystemClock.uptimeMillis()));
+            writer.println("Recording key events");
+        } else if (args.length > 1 && args[1].equals("stop")) {
+            File file = new File(new File(getFilesDir(), "traces"), "keys-" + System.currentTimeMillis() + ".bbkt");
+            handler.post(() -> {
+                KeyEventTrace finished = trace;
+                trace = null;
+                tracing = false;
+                if (finished != null) {
+                    backgroundExecutor.execute(() -> writeTrace(finished, file));
+                }
+            });
+            writer.println("Writing " + file);
+        } else {
+            writer.println("Usage: trace start or trace stop");
+        }
+    }
+
+    private static void writeTrace(KeyEventTrace finished, File file) {
+        try {
+            file.getParentFile().mkdirs();
+            finished.write(file);
+            Log.i(TAG, "Wrote " + finished.eventCount() + " key events to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write key event trace: " + e.getMessage());
+        }
+    }
+
+    private void bindFromDump(PrintWriter writer, String[] args) {
+        boolean bind = args[0].equals("bind");
+        if (args.length < (bind ? 3 : 2)) {
+            writer.println("Usage: bind <package|default> <spec> or unbind <package|default>");
+            return;
+        }
+        String foregroundPackage = args[1].equals("default") ? null : args[1];
+        String spec = bind ? String.join(" ", Arrays.asList(args).subList(2, args.length)) : null;
+        AppPrefs.updateProfiles(this, profiles -> profiles.with(foregroundPackage,
+                KeyEvent.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS, spec));
+        writer.println((bind ? "Bound " + spec : "Unbound") + " for " + args[1]);
+    }
+
+    /** Subscribes to (or drops) window-state events; nothing else is ever requested. */
+    void setWindowStateEventsEnabled(boolean enabled) {
+        if (windowStateEventsEnabled == enabled) {
+            return;
+        }
+        windowStateEventsEnabled = enabled;
+        if (!enabled) {
+            foregroundTracker.clear(); // Would go stale without events
+        }
+        if (connected) {
+            applyEventSubscription();
+            Log.i(TAG, eventStats.describe(SystemClock.uptimeMillis()));
+        }
+    }
+
+    private void applyEventSubscription() {
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null) {
+            info = new AccessibilityServiceInfo();
+        }
+
+        if (LEGACY_EVENT_SUBSCRIPTION) {
+            info.flags = AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS | AccessibilityServiceInfo.FLAG_REQUEST_FILTER_KEY_EVENTS;
+            info.eventTypes = AccessibilityEvent.TYPES_ALL_MASK;
+        } else {
+            // Key events arrive through onKeyEvent and are not part of the event mask at all
+            info.flags = AccessibilityServiceInfo.FLAG_REQUEST_FILTER_KEY_EVENTS;
+            info.eventTypes = windowStateEventsEnabled ? AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED : 0;
+        }
         info.feedbackType = AccessibilityServiceInfo.FEEDBACK_GENERIC;
         info.packageNames = null; // Listen to all packages
 
-        this.setServiceInfo(info);
-        Log.d(TAG, "ButtonBuddyAccessibilityService connected successfully.");
-
-        // We no longer need to load currentTargetPackage here initially, as it's fetched just-in-time.
-        // Log.d(TAG, "Initial target package set to: " + currentTargetPackage); // This line can be removed
+        setServiceInfo(info);
+        eventStats.startEpoch(info.eventTypes, SystemClock.uptimeMillis());
     }
 }
\ No newline at end of file
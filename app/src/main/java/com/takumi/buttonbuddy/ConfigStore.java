@@ -0,0 +1,187 @@
+package com.takumi.buttonbuddy;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * The bindings in a small versioned binary file instead of SharedPreferences XML. The file is
+ * read with a single read into an immutable {@link BindingProfiles} snapshot; edits swap in a
+ * new snapshot (copy-on-write) and the file is rewritten in the background, to a temp file that
+ * is synced and then renamed over the old one, so a crash leaves either the old or the new
+ * config, never a mix. Bursts of edits collapse into one write of the latest snapshot.
+ *
+ * A file that exists but cannot be read (corrupt, or written by a newer version before a
+ * downgrade) is never overwritten on load: the store falls back in memory and moves the file
+ * aside to {@code <name>.bad} only when the user's next edit is written.
+ */
+final class ConfigStore {
+
+    private static final int MAGIC = 0x42424346; // "BBCF"
+    static final int VERSION = 1; // Bump with a case in readFrom when the layout changes
+
+    /** Where the bindings were kept before this store existed. */
+    interface LegacySource {
+        BindingProfiles load();
+
+        /** Called once the migrated bindings are safely on disk. */
+        void clear();
+    }
+
+    private final File file;
+    private final Executor writeExecutor;
+    private final AtomicReference<BindingProfiles> current = new AtomicReference<>(BindingProfiles.EMPTY);
+    private final AtomicBoolean writeQueued = new AtomicBoolean();
+    private volatile IOException lastWriteError;
+    private volatile LegacySource legacyToClear; // Set until the migrated bindings are on disk
+    private volatile boolean unreadableOnDisk; // Set until the next write moves the file aside
+
+    ConfigStore(File file, Executor writeExecutor) {
+        this.file = file;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /**
+     * Loads the file, or on first run (no file yet) takes the bindings from {@code legacy} and
+     * writes them in the background; the legacy copy is only cleared once that write succeeded.
+     * If the file exists but cannot be read, {@code legacy} only serves as an in-memory fallback
+     * and nothing is written. Called once, before any other method.
+     */
+    BindingProfiles load(LegacySource legacy) {
+        if (!file.exists()) {
+            BindingProfiles profiles = legacy.load();
+            current.set(profiles);
+            legacyToClear = legacy;
+            scheduleWrite(); // Migrate again next time if this fails
+            return profiles;
+        }
+        BindingProfiles profiles = read(file);
+        if (profiles == null) {
+            unreadableOnDisk = true;
+            profiles = legacy.load();
+        }
+        current.set(profiles);
+        return profiles;
+    }
+
+    /** True while an unreadable file is kept on disk and the bindings in use are a fallback. */
+    boolean isFallback() {
+        return unreadableOnDisk;
+    }
+
+    BindingProfiles get() {
+        return current.get();
+    }
+
+    void set(BindingProfiles profiles) {
+        current.set(profiles);
+        scheduleWrite();
+    }
+
+    /** Applies {@code edit} to the latest snapshot, retrying if another edit won the race. */
+    BindingProfiles update(UnaryOperator<BindingProfiles> edit) {
+        while (true) {
+            BindingProfiles before = current.get();
+            BindingProfiles after = edit.apply(before);
+            if (current.compareAndSet(before, after)) {
+                scheduleWrite();
+                return after;
+            }
+        }
+    }
+
+    private void scheduleWrite() {
+        if (!writeQueued.compareAndSet(false, true)) {
+            return; // Already queued; it writes whatever is current then
+        }
+        writeExecutor.execute(() -> {
+            writeQueued.set(false);
+            try {
+                if (unreadableOnDisk) {
+                    File aside = new File(file.getPath() + ".bad");
+                    if (!file.renameTo(aside)) {
+                        throw new IOException("Could not move " + file + " aside");
+                    }
+                    unreadableOnDisk = false;
+                }
+                write(file, current.get());
+                lastWriteError = null;
+                LegacySource legacy = legacyToClear;
+                if (legacy != null) {
+                    legacyToClear = null;
+                    legacy.clear();
+                }
+            } catch (IOException e) {
+                lastWriteError = e; // The snapshot stays authoritative; the next edit retries
+            }
+        });
+    }
+
+    IOException getLastWriteError() {
+        return lastWriteError;
+    }
+
+    /** Returns null if the file is missing, from an unknown format version or unreadable. */
+    static BindingProfiles read(File file) {
+        long length = file.length(); // 0 if missing
+        if (length < 8 || length > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) length];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < bytes.length) { // One read in practice; the file is a few hundred bytes
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    return null;
+                }
+                read += n;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return readFrom(bytes);
+    }
+
+    static BindingProfiles readFrom(byte[] bytes) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            switch (in.readInt()) {
+                case 1:
+                    return BindingProfiles.readFrom(in);
+                default:
+                    return null; // Written by a newer version
+            }
+        } catch (IOException e) {
+            return null; // Truncated or corrupt
+        }
+    }
+
+    static void write(File file, BindingProfiles profiles) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            profiles.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.takumi.buttonbuddy;
+
+import java.util.Locale;
+
+/**
+ * Counts how many accessibility and key events the system delivered to the service, split
+ * into epochs: a new epoch starts every time the service changes its event subscription.
+ * Comparing the current epoch with the previous one shows what a subscription change saved.
+ *
+ * Written only on the service's main thread, where events are delivered and subscriptions
+ * applied; key handling on the gesture thread never touches it. describe is also called from
+ * dumpsys on a binder thread, so every field is volatile: a single writer needs no atomics, and
+ * a dump sees current counts, at worst mixing values from either side of one event.
+ */
+final class EventDeliveryStats {
+
+    private static final class Epoch {
+        volatile int eventTypes = -1;
+        volatile long startedAt;
+        volatile long endedAt;
+        volatile long accessibilityEvents;
+        volatile long keyEvents;
+
+        void copyFrom(Epoch other) {
+            eventTypes = other.eventTypes;
+            startedAt = other.startedAt;
+            endedAt = other.endedAt;
+            accessibilityEvents = other.accessibilityEvents;
+            keyEvents = other.keyEvents;
+        }
+    }
+
+    private final Epoch current = new Epoch();
+    private final Epoch previous = new Epoch();
+    private volatile long totalAccessibilityEvents;
+    private volatile long totalKeyEvents;
+    private volatile int subscriptionChanges;
+
+    void startEpoch(int eventTypes, long now) {
+        if (current.eventTypes != -1) {
+            current.endedAt = now;
+            previous.copyFrom(current);
+            subscriptionChanges++;
+        }
+        current.eventTypes = eventTypes;
+        current.startedAt = now;
+        current.endedAt = 0;
+        current.accessibilityEvents = 0;
+        current.keyEvents = 0;
+    }
+
+    void onAccessibilityEvent() {
+        current.accessibilityEvents++;
+        totalAccessibilityEvents++;
+    }
+
+    void onKeyEvent() {
+        current.keyEvents++;
+        totalKeyEvents++;
+    }
+
+    long currentAccessibilityEvents() {
+        return current.accessibilityEvents;
+    }
+
+    long totalAccessibilityEvents() {
+        return totalAccessibilityEvents;
+    }
+
+    String describe(long now) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Event delivery: ").append(totalAccessibilityEvents).append(" accessibility events, ")
+                .append(totalKeyEvents).append(" key events, ")
+                .append(subscriptionChanges).append(" subscription changes\n");
+        appendEpoch(sb, "  current ", current, now);
+        if (previous.eventTypes != -1) {
+            appendEpoch(sb, "  previous", previous, previous.endedAt);
+        }
+        return sb.toString();
+    }
+
+    private static void appendEpoch(StringBuilder sb, String label, Epoch epoch, long end) {
+        if (epoch.eventTypes == -1) {
+            return;
+        }
+        long durationMillis = Math.max(1, end - epoch.startedAt);
+        double minutes = durationMillis / 60000.0;
+        sb.append(label)
+                .append(String.format(Locale.US, " eventTypes=0x%x", epoch.eventTypes))
+                .append(" for ").append(durationMillis / 1000).append("s: ")
+                .append(epoch.accessibilityEvents).append(" a11y events")
+                .append(String.format(Locale.US, " (%.1f/min), ", epoch.accessibilityEvents / minutes))
+                .append(epoch.keyEvents).append(" key events")
+                .append(String.format(Locale.US, " (%.1f/min)", epoch.keyEvents / minutes))
+                .append('\n');
+    }
+}
@@ -0,0 +1,61 @@
+package com.takumi.buttonbuddy;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Remembers which app is in front from TYPE_WINDOW_STATE_CHANGED events. Events arrive in
+ * bursts (activity, then its dialogs and popups), so an event only costs a string compare and
+ * a volatile write; nothing is looked up until a gesture actually needs the foreground app.
+ *
+ * Windows of overlay packages (the volume panel in System UI, keyboards, this app) are ignored,
+ * otherwise pressing the volume key would itself make System UI the foreground app.
+ */
+final class ForegroundAppTracker {
+
+    static final String SYSTEM_UI_PACKAGE = "com.android.systemui";
+
+    private volatile Set<String> ignoredPackages = Collections.singleton(SYSTEM_UI_PACKAGE);
+    private volatile String foregroundPackage;
+
+    // Written by the event thread only
+    private volatile long windowEvents;
+    private volatile long foregroundChanges;
+
+    /** Replaces the overlay packages to ignore; System UI is always ignored. */
+    void setIgnoredPackages(Set<String> packages) {
+        Set<String> ignored = new HashSet<>(packages);
+        ignored.add(SYSTEM_UI_PACKAGE);
+        ignoredPackages = ignored;
+    }
+
+    /** Called for each TYPE_WINDOW_STATE_CHANGED event with the event's package name. */
+    void onWindowStateChanged(CharSequence packageName) {
+        windowEvents++;
+        if (packageName == null) {
+            return;
+        }
+        String name = packageName.toString(); // AccessibilityEvent already holds a String, so no copy
+        if (name.equals(foregroundPackage) || ignoredPackages.contains(name)) {
+            return; // Rest of a burst from the same app, or an overlay
+        }
+        foregroundPackage = name;
+        foregroundChanges++;
+    }
+
+    /** The app in front, or null if unknown (no event since tracking started). */
+    String getForegroundPackage() {
+        return foregroundPackage;
+    }
+
+    /** Forgets the foreground app, e.g. when window events are unsubscribed and it goes stale. */
+    void clear() {
+        foregroundPackage = null;
+    }
+
+    String describe() {
+        return "Foreground app: " + foregroundPackage + " (" + foregroundChanges + " changes from "
+                + windowEvents + " window events)\n";
+    }
+}
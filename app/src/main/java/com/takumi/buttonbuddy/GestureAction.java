@@ -0,0 +1,64 @@
+package com.takumi.buttonbuddy;
+
+import java.util.Set;
+
+/**
+ * Something a gesture can trigger. Bindings store actions as spec strings so the binding table
+ * stays a plain String lookup; {@link GestureActions} parses each spec once into an action:
+ *
+ * <pre>
+ *   com.example.app                      launch the app
+ *   uri:https://example.com/pay          open a deep link or any other URI
+ *   component:com.example/.ScanActivity  start an exported activity
+ *   macro:uri:...|sleep:500|com.example  run steps in order; sleep:N waits N ms
+ * </pre>
+ *
+ * Runs on an {@link ActionPipeline} worker, never on the gesture thread.
+ */
+abstract class GestureAction {
+
+    static final String URI_PREFIX = "uri:";
+    static final String COMPONENT_PREFIX = "component:";
+    static final String MACRO_PREFIX = "macro:";
+    static final String SLEEP_PREFIX = "sleep:";
+    static final String MACRO_SEPARATOR = "|"; // Not valid unescaped in a URI
+
+    final String spec;
+    final int policy; // ActionPipeline.POLICY_*
+    final long timeoutMillis;
+
+    GestureAction(String spec, int policy, long timeoutMillis) {
+        this.spec = spec;
+        this.policy = policy;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Performs the action; returning false or throwing counts as a failure. Long-running actions
+     * should give up when the thread is interrupted, which is how timeouts are enforced.
+     */
+    abstract boolean run() throws Exception;
+
+    /** Package whose launch can be prepared while the key is still held, or null. */
+    String launchPackage() {
+        return null;
+    }
+
+    /** Adds every package this action may launch, so their launch Intents can be prewarmed. */
+    void collectLaunchPackages(Set<String> into) {
+        String packageName = launchPackage();
+        if (packageName != null) {
+            into.add(packageName);
+        }
+    }
+
+    /** Plain package names (the only thing older versions stored) never contain a colon. */
+    static boolean isAppLaunch(String spec) {
+        return spec.indexOf(':') < 0;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,294 @@
+package com.takumi.buttonbuddy;
+
+import android.app.ActivityOptions;
+import android.content.ActivityNotFoundException;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns binding specs into {@link GestureAction}s (see there for the format). Each spec is parsed
+ * once and cached, so firing a gesture is a map lookup; {@link #retainOnly} drops specs no
+ * binding uses any more.
+ *
+ * Apps in another profile ("package@serial", see {@link AppInfo#keyOf}) are resolved to their
+ * launcher activity when parsed and started through LauncherApps, which is the only way to
+ * launch across profiles. A LauncherApps callback re-resolves them when the package changes.
+ */
+final class GestureActions {
+
+    private static final String TAG = "ButtonBuddyService";
+    private static final long LAUNCH_TIMEOUT_MILLIS = 3000; // Generous; a cold start can be slow to return
+    private static final long MACRO_TIMEOUT_MILLIS = 15000;
+
+    private final Context context;
+    private final LaunchPreparer launchPreparer;
+    private final long holdThresholdMillis;
+    private final ConcurrentHashMap<String, GestureAction> actions = new ConcurrentHashMap<>();
+    private final LauncherApps launcherApps;
+
+    private final LauncherApps.Callback profileCallback = new LauncherApps.Callback() {
+        @Override
+        public void onPackageAdded(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackageChanged(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackageRemoved(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackagesAvailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for (String packageName : packageNames) {
+                invalidate(packageName, user);
+            }
+        }
+
+        @Override
+        public void onPackagesUnavailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for (String packageName : packageNames) {
+                invalidate(packageName, user);
+            }
+        }
+    };
+
+    GestureActions(Context context, LaunchPreparer launchPreparer, long holdThresholdMillis) {
+        this.context = context;
+        this.launchPreparer = launchPreparer;
+        this.holdThresholdMillis = holdThresholdMillis;
+        this.launcherApps = context.getSystemService(LauncherApps.class);
+    }
+
+    void register() {
+        launcherApps.registerCallback(profileCallback, new Handler(Looper.getMainLooper()));
+    }
+
+    void unregister() {
+        launcherApps.unregisterCallback(profileCallback);
+    }
+
+    // Own-profile launches are kept fresh by LaunchIntentCache's package broadcasts
+    private void invalidate(String packageName, UserHandle user) {
+        if (user.equals(Process.myUserHandle())) {
+            return;
+        }
+        String key = AppInfo.keyOf(packageName, ProfileApps.serialOf(context, user));
+        if (actions.remove(key) != null) {
+            get(key); // Resolve again now rather than when the gesture fires
+        }
+    }
+
+    GestureAction get(String spec) {
+        GestureAction action = actions.get(spec);
+        if (action == null) {
+            action = parse(spec, true);
+            GestureAction raced = actions.putIfAbsent(spec, action);
+            if (raced != null) {
+                action = raced;
+            }
+        }
+        return action;
+    }
+
+    void retainOnly(Set<String> specs) {
+        actions.keySet().retainAll(specs);
+    }
+
+    private GestureAction parse(String spec, boolean allowMacro) {
+        if (allowMacro && spec.startsWith(GestureAction.MACRO_PREFIX)) {
+            List<GestureAction> steps = new ArrayList<>();
+            int start = GestureAction.MACRO_PREFIX.length();
+            while (start <= spec.length()) {
+                int end = spec.indexOf(GestureAction.MACRO_SEPARATOR, start);
+                if (end < 0) {
+                    end = spec.length();
+                }
+                String step = spec.substring(start, end).trim();
+                if (!step.isEmpty()) {
+                    steps.add(parse(step, false)); // No nested macros
+                }
+                start = end + GestureAction.MACRO_SEPARATOR.length();
+            }
+            return new MacroAction(spec, steps);
+        }
+        if (spec.startsWith(GestureAction.URI_PREFIX)) {
+            return new OpenUriAction(spec, spec.substring(GestureAction.URI_PREFIX.length()));
+        }
+        if (spec.startsWith(GestureAction.COMPONENT_PREFIX)) {
+            return new StartComponentAction(spec, spec.substring(GestureAction.COMPONENT_PREFIX.length()));
+        }
+        if (spec.startsWith(GestureAction.SLEEP_PREFIX)) {
+            long millis;
+            try {
+                millis = Long.parseLong(spec.substring(GestureAction.SLEEP_PREFIX.length()).trim());
+            } catch (NumberFormatException e) {
+                millis = 0;
+            }
+            return new SleepAction(spec, millis);
+        }
+        if (AppInfo.userSerialOf(spec) != AppInfo.MY_PROFILE) {
+            return new LaunchProfileAppAction(spec);
+        }
+        return new LaunchAppAction(spec);
+    }
+
+    private final class LaunchAppAction extends GestureAction {
+        private final String packageName;
+
+        LaunchAppAction(String packageName) {
+            super(packageName, ActionPipeline.POLICY_DROP, LAUNCH_TIMEOUT_MILLIS);
+            this.packageName = packageName;
+        }
+
+        @Override
+        boolean run() {
+            return launchPreparer.launch(context, packageName, holdThresholdMillis);
+        }
+
+        @Override
+        String launchPackage() {
+            return packageName;
+        }
+    }
+
+    private final class LaunchProfileAppAction extends GestureAction {
+        private final UserHandle user;
+        private final ComponentName component;
+        private final Bundle options = ActivityOptions.makeBasic().toBundle();
+
+        LaunchProfileAppAction(String key) {
+            super(key, ActionPipeline.POLICY_DROP, LAUNCH_TIMEOUT_MILLIS);
+            user = ProfileApps.userOf(context, AppInfo.userSerialOf(key));
+            LauncherActivityInfo activity = user != null
+                    ? ProfileApps.mainActivity(context, AppInfo.packageOf(key), user) : null;
+            component = activity != null ? activity.getComponentName() : null;
+        }
+
+        @Override
+        boolean run() {
+            if (component == null) {
+                Log.e(TAG, "Could not find launcher activity for " + spec + " (profile removed or app uninstalled)");
+                return false;
+            }
+            try {
+                launcherApps.startMainActivity(component, user, null, options);
+                return true;
+            } catch (ActivityNotFoundException | SecurityException e) {
+                Log.e(TAG, "Error launching " + spec + ": " + e.getMessage()); // e.g. the work profile is paused
+                return false;
+            }
+        }
+    }
+
+    private final class OpenUriAction extends GestureAction {
+        private final Intent template;
+
+        OpenUriAction(String spec, String uri) {
+            super(spec, ActionPipeline.POLICY_DROP, LAUNCH_TIMEOUT_MILLIS);
+            template = new Intent(Intent.ACTION_VIEW, Uri.parse(uri)).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        }
+
+        @Override
+        boolean run() {
+            return start(new Intent(template), spec); // startActivity may modify the Intent
+        }
+    }
+
+    private final class StartComponentAction extends GestureAction {
+        private final ComponentName component;
+
+        StartComponentAction(String spec, String flattenedComponent) {
+            super(spec, ActionPipeline.POLICY_DROP, LAUNCH_TIMEOUT_MILLIS);
+            component = ComponentName.unflattenFromString(flattenedComponent);
+        }
+
+        @Override
+        boolean run() {
+            if (component == null) {
+                Log.e(TAG, "Malformed component in action " + spec);
+                return false;
+            }
+            return start(new Intent().setComponent(component).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK), spec);
+        }
+    }
+
+    private static final class SleepAction extends GestureAction {
+        private final long millis;
+
+        SleepAction(String spec, long millis) {
+            super(spec, ActionPipeline.POLICY_DROP, millis + LAUNCH_TIMEOUT_MILLIS);
+            this.millis = millis;
+        }
+
+        @Override
+        boolean run() throws InterruptedException {
+            Thread.sleep(millis); // Interrupted when the macro times out
+            return true;
+        }
+    }
+
+    // Re-triggering a running macro queues one more pass instead of interleaving two
+    private static final class MacroAction extends GestureAction {
+        private final List<GestureAction> steps;
+
+        MacroAction(String spec, List<GestureAction> steps) {
+            super(spec, ActionPipeline.POLICY_COALESCE, MACRO_TIMEOUT_MILLIS);
+            this.steps = steps;
+        }
+
+        @Override
+        boolean run() throws Exception {
+            for (GestureAction step : steps) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (!step.run()) {
+                    return false;
+                }
+            }
+            return !steps.isEmpty();
+        }
+
+        @Override
+        String launchPackage() {
+            return steps.isEmpty() ? null : steps.get(0).launchPackage();
+        }
+
+        @Override
+        void collectLaunchPackages(Set<String> into) {
+            for (GestureAction step : steps) {
+                step.collectLaunchPackages(into);
+            }
+        }
+    }
+
+    private boolean start(Intent intent, String spec) {
+        try {
+            context.startActivity(intent);
+            return true;
+        } catch (ActivityNotFoundException | SecurityException e) {
+            Log.e(TAG, "Error running action " + spec + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
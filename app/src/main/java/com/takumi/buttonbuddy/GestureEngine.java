@@ -0,0 +1,279 @@
+package com.takumi.buttonbuddy;
+
+/**
+ * Pure-Java recognizer for volume-key gestures: long press, double/triple tap,
+ * press-and-hold-then-release and the volume up + down chord.
+ *
+ * All per-key state lives in preallocated arrays and every deadline sits in one
+ * {@link TimerWheel}, so handling a key event never allocates. The owner arms a single
+ * platform timer for {@link #nextDeadline()} and calls {@link #onTimer()} when it fires.
+ * Time comes from an injectable {@link Clock}, which keeps the engine testable on the JVM.
+ * Not thread-safe: all calls must come from the same thread.
+ */
+final class GestureEngine implements TimerWheel.Callback {
+
+    interface Clock {
+        long uptimeMillis();
+    }
+
+    interface Listener {
+        void onGesture(int gesture, int keyCode, long eventTime);
+
+        /** A press that will become a long press at {@code deadline} unless released first. */
+        default void onLongPressArmed(int keyCode, long downTime, long deadline) {
+        }
+
+        /** An armed long press ended without firing. */
+        default void onLongPressDisarmed(int keyCode) {
+        }
+    }
+
+    // Mirrors of android.view.KeyEvent constants so this class stays free of Android imports
+    static final int KEYCODE_VOLUME_UP = 24;
+    static final int KEYCODE_VOLUME_DOWN = 25;
+    static final int ACTION_DOWN = 0;
+    static final int ACTION_UP = 1;
+
+    static final int GESTURE_LONG_PRESS = 0;
+    static final int GESTURE_DOUBLE_TAP = 1;
+    static final int GESTURE_TRIPLE_TAP = 2;
+    static final int GESTURE_HOLD_RELEASE = 3;
+    static final int GESTURE_CHORD = 4;
+    static final int GESTURE_COUNT = 5;
+
+    static final long NO_DEADLINE = TimerWheel.NO_DEADLINE;
+
+    static final long DEFAULT_LONG_PRESS_MILLIS = 1000;
+    static final long DEFAULT_MULTI_TAP_MILLIS = 300;
+    static final long DEFAULT_CHORD_MILLIS = 150;
+
+    private static final int SLOT_VOLUME_DOWN = 0;
+    private static final int SLOT_VOLUME_UP = 1;
+    private static final int SLOT_COUNT = 2;
+
+    // Timer ids: two timers per key slot
+    private static final int TIMER_LONG_PRESS = 0;
+    private static final int TIMER_TAP = 1;
+    private static final int TIMERS_PER_SLOT = 2;
+
+    private final Clock clock;
+    private final Listener listener;
+    private final TimerWheel wheel = new TimerWheel(SLOT_COUNT * TIMERS_PER_SLOT, 64, 16);
+
+    // Per-gesture timing, meaning depends on the gesture:
+    // long press/hold-release = minimum hold, double/triple tap = max gap between taps,
+    // chord = max gap between the two key downs.
+    private final long[] timings = new long[GESTURE_COUNT];
+    private final int[] enabledGestures = new int[SLOT_COUNT]; // Bitmask of gestures per key
+
+    private final boolean[] down = new boolean[SLOT_COUNT];
+    private final long[] downTime = new long[SLOT_COUNT];
+    private final boolean[] longPressFired = new boolean[SLOT_COUNT];
+    private final boolean[] consumed = new boolean[SLOT_COUNT]; // Press already used by a chord
+    private final int[] tapCount = new int[SLOT_COUNT];
+
+    GestureEngine(Clock clock, Listener listener) {
+        this.clock = clock;
+        this.listener = listener;
+        timings[GESTURE_LONG_PRESS] = DEFAULT_LONG_PRESS_MILLIS;
+        timings[GESTURE_HOLD_RELEASE] = DEFAULT_LONG_PRESS_MILLIS;
+        timings[GESTURE_DOUBLE_TAP] = DEFAULT_MULTI_TAP_MILLIS;
+        timings[GESTURE_TRIPLE_TAP] = DEFAULT_MULTI_TAP_MILLIS;
+        timings[GESTURE_CHORD] = DEFAULT_CHORD_MILLIS;
+    }
+
+    void setTiming(int gesture, long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Timing must be positive: " + millis);
+        }
+        timings[gesture] = millis;
+    }
+
+    long getTiming(int gesture) {
+        return timings[gesture];
+    }
+
+    void setGestureEnabled(int keyCode, int gesture, boolean enabled) {
+        int slot = slotOf(keyCode);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Unsupported key code: " + keyCode);
+        }
+        if (enabled) {
+            enabledGestures[slot] |= 1 << gesture;
+        } else {
+            enabledGestures[slot] &= ~(1 << gesture);
+        }
+    }
+
+    boolean isGestureEnabled(int keyCode, int gesture) {
+        int slot = slotOf(keyCode);
+        return slot >= 0 && (enabledGestures[slot] & (1 << gesture)) != 0;
+    }
+
+    /** Feeds one key event. Times are in the same base as the clock (uptime millis). */
+    void onKeyEvent(int keyCode, int action, int repeatCount, long eventTime) {
+        wheel.advance(eventTime, this);
+
+        int slot = slotOf(keyCode);
+        if (slot < 0 || enabledGestures[slot] == 0) {
+            // Any other key interrupts whatever volume gesture was in progress
+            reset();
+            return;
+        }
+        if (action == ACTION_DOWN) {
+            if (repeatCount == 0) {
+                onDown(slot, eventTime);
+            }
+        } else if (action == ACTION_UP) {
+            onUp(slot, eventTime);
+        }
+    }
+
+    /** Fires every gesture whose deadline has passed according to the clock. */
+    void onTimer() {
+        wheel.advance(clock.uptimeMillis(), this);
+    }
+
+    long nextDeadline() {
+        return wheel.nextDeadline();
+    }
+
+    /**
+     * True when no key is down and no deadline is pending. An unbound key or an auto-repeat
+     * then changes nothing, so the caller need not deliver it.
+     */
+    boolean isIdle() {
+        return !down[SLOT_VOLUME_DOWN] && !down[SLOT_VOLUME_UP] && wheel.nextDeadline() == NO_DEADLINE;
+    }
+
+    /** Drops all in-progress presses and pending deadlines. */
+    void reset() {
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            disarmLongPress(slot);
+        }
+        wheel.cancelAll();
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            down[slot] = false;
+            longPressFired[slot] = false;
+            consumed[slot] = false;
+            tapCount[slot] = 0;
+        }
+    }
+
+    @Override
+    public void onTimerExpired(int timerId, long deadline) {
+        int slot = timerId / TIMERS_PER_SLOT;
+        if (timerId % TIMERS_PER_SLOT == TIMER_LONG_PRESS) {
+            if (down[slot] && !consumed[slot]) {
+                longPressFired[slot] = true;
+                tapCount[slot] = 0;
+                listener.onGesture(GESTURE_LONG_PRESS, keyCodeOf(slot), deadline);
+            }
+        } else {
+            if (tapCount[slot] == 2 && isEnabled(slot, GESTURE_DOUBLE_TAP)) {
+                listener.onGesture(GESTURE_DOUBLE_TAP, keyCodeOf(slot), deadline);
+            }
+            tapCount[slot] = 0;
+        }
+    }
+
+    private void onDown(int slot, long eventTime) {
+        int other = 1 - slot;
+        if (down[other] && !consumed[other]
+                && isEnabled(slot, GESTURE_CHORD) && isEnabled(other, GESTURE_CHORD)
+                && eventTime - downTime[other] <= timings[GESTURE_CHORD]) {
+            // Both keys are now part of the chord; neither may also count as a press or tap
+            consumed[slot] = true;
+            consumed[other] = true;
+            down[slot] = true;
+            downTime[slot] = eventTime;
+            cancelSlot(slot);
+            cancelSlot(other);
+            listener.onGesture(GESTURE_CHORD, keyCodeOf(slot), eventTime);
+            return;
+        }
+
+        down[slot] = true;
+        downTime[slot] = eventTime;
+        longPressFired[slot] = false;
+        consumed[slot] = false;
+        wheel.cancel(timerId(slot, TIMER_TAP)); // A tap sequence continues until this press resolves
+        if (isEnabled(slot, GESTURE_LONG_PRESS)) {
+            long deadline = eventTime + timings[GESTURE_LONG_PRESS];
+            wheel.schedule(timerId(slot, TIMER_LONG_PRESS), deadline);
+            listener.onLongPressArmed(keyCodeOf(slot), eventTime, deadline);
+        }
+    }
+
+    private void onUp(int slot, long eventTime) {
+        if (!down[slot]) {
+            return;
+        }
+        down[slot] = false;
+        disarmLongPress(slot);
+        if (consumed[slot]) {
+            consumed[slot] = false;
+            return;
+        }
+
+        long heldFor = eventTime - downTime[slot];
+        boolean longHold = longPressFired[slot] || heldFor >= timings[GESTURE_HOLD_RELEASE];
+        if (longHold) {
+            tapCount[slot] = 0;
+            if (isEnabled(slot, GESTURE_HOLD_RELEASE) && heldFor >= timings[GESTURE_HOLD_RELEASE]) {
+                listener.onGesture(GESTURE_HOLD_RELEASE, keyCodeOf(slot), eventTime);
+            }
+            return;
+        }
+
+        boolean doubleTap = isEnabled(slot, GESTURE_DOUBLE_TAP);
+        boolean tripleTap = isEnabled(slot, GESTURE_TRIPLE_TAP);
+        if (!doubleTap && !tripleTap) {
+            return;
+        }
+        int taps = ++tapCount[slot];
+        if (taps >= 3 || (taps == 2 && !tripleTap)) {
+            tapCount[slot] = 0;
+            listener.onGesture(taps >= 3 ? GESTURE_TRIPLE_TAP : GESTURE_DOUBLE_TAP, keyCodeOf(slot), eventTime);
+        } else {
+            long gap = taps == 1 ? timings[GESTURE_DOUBLE_TAP] : timings[GESTURE_TRIPLE_TAP];
+            wheel.schedule(timerId(slot, TIMER_TAP), eventTime + gap);
+        }
+    }
+
+    private void disarmLongPress(int slot) {
+        int timer = timerId(slot, TIMER_LONG_PRESS);
+        if (wheel.isPending(timer)) {
+            wheel.cancel(timer);
+            listener.onLongPressDisarmed(keyCodeOf(slot));
+        }
+    }
+
+    private void cancelSlot(int slot) {
+        disarmLongPress(slot);
+        wheel.cancel(timerId(slot, TIMER_TAP));
+        longPressFired[slot] = false;
+        tapCount[slot] = 0;
+    }
+
+    private boolean isEnabled(int slot, int gesture) {
+        return (enabledGestures[slot] & (1 << gesture)) != 0;
+    }
+
+    private static int timerId(int slot, int timer) {
+        return slot * TIMERS_PER_SLOT + timer;
+    }
+
+    private static int slotOf(int keyCode) {
+        if (keyCode == KEYCODE_VOLUME_DOWN) {
+            return SLOT_VOLUME_DOWN;
+        } else if (keyCode == KEYCODE_VOLUME_UP) {
+            return SLOT_VOLUME_UP;
+        }
+        return -1;
+    }
+
+    private static int keyCodeOf(int slot) {
+        return slot == SLOT_VOLUME_DOWN ? KEYCODE_VOLUME_DOWN : KEYCODE_VOLUME_UP;
+    }
+}
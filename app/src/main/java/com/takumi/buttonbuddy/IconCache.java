@@ -0,0 +1,114 @@
+package com.takumi.buttonbuddy;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.UserHandle;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * App icons for the picker, loaded on demand on a small background pool and rasterized to the
+ * row's icon size. Bitmaps live in an LRU bounded by bytes, so memory stays flat no matter how
+ * many apps are installed. Apps from other profiles get the profile badge (the work briefcase).
+ */
+final class IconCache {
+
+    private static final String TAG = "IconCache";
+    private static final int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+
+    interface Callback {
+        /** Delivered on the main thread. */
+        void onIconLoaded(String key, Bitmap icon);
+    }
+
+    private final Context context;
+    private final PackageManager pm;
+    private final int iconSizePx;
+    private final LruCache<String, Bitmap> cache;
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    IconCache(Context context, int iconSizePx) {
+        this.context = context.getApplicationContext();
+        this.pm = this.context.getPackageManager();
+        this.iconSizePx = iconSizePx;
+        int maxBytes = (int) Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 16);
+        this.cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    Bitmap getCached(String key) {
+        return cache.get(key);
+    }
+
+    /** Loads the icon off the main thread. Cancel the returned Future when the row is recycled. */
+    Future<?> load(String key, String packageName, long userSerial, Callback callback) {
+        return pool.submit(() -> {
+            Bitmap icon = cache.get(key);
+            if (icon == null) {
+                icon = rasterize(packageName, userSerial);
+                if (icon == null || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                cache.put(key, icon);
+            }
+            Bitmap loaded = icon;
+            mainHandler.post(() -> callback.onIconLoaded(key, loaded));
+        });
+    }
+
+    void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
+        cache.evictAll();
+    }
+
+    private Bitmap rasterize(String packageName, long userSerial) {
+        Drawable drawable;
+        if (userSerial == AppInfo.MY_PROFILE) {
+            try {
+                drawable = pm.getApplicationIcon(packageName);
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w(TAG, "No icon for " + packageName + ": " + e.getMessage());
+                return null;
+            }
+        } else {
+            UserHandle user = ProfileApps.userOf(context, userSerial);
+            LauncherActivityInfo activity = user != null ? ProfileApps.mainActivity(context, packageName, user) : null;
+            if (activity == null) {
+                Log.w(TAG, "No icon for " + packageName + " in profile " + userSerial);
+                return null;
+            }
+            drawable = activity.getBadgedIcon(0);
+        }
+        // Draw at the row's pixel size instead of keeping the full-resolution drawable around
+        Bitmap bitmap = Bitmap.createBitmap(iconSizePx, iconSizePx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, iconSizePx, iconSizePx);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+}
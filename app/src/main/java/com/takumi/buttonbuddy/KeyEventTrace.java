@@ -0,0 +1,195 @@
+package com.takumi.buttonbuddy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A recorded or synthetic stream of key events, plus the gestures that were recognized (or are
+ * expected) in it and the engine configuration it was recorded under. Debug builds record one
+ * through dumpsys; the JVM replay harness in the unit tests plays it back.
+ *
+ * Anonymized on the way in: keys other than volume up/down are all stored as
+ * {@link #KEYCODE_OTHER}, since the service sees every key the user types, and times are kept
+ * relative to the start of the recording. Not thread-safe; the service only touches it on the
+ * gesture thread.
+ */
+final class KeyEventTrace {
+
+    private static final int MAGIC = 0x42424b54; // "BBKT"
+    private static final int VERSION = 1;
+
+    static final int KEYCODE_OTHER = 0; // KeyEvent.KEYCODE_UNKNOWN; still interrupts gestures on replay
+    static final int MAX_EVENTS = 1 << 20; // About 12 MB; recording stops there
+
+    private final int[] enabledGestures = new int[2]; // Volume down, volume up bitmasks
+    private final long[] timings = new long[GestureEngine.GESTURE_COUNT];
+
+    private int[] events = new int[256]; // keyCode | action << 16 | repeatCount << 24
+    private long[] eventTimes = new long[256];
+    private int eventCount;
+    private int[] gestures = new int[16]; // gesture | keyCode << 8
+    private long[] gestureTimes = new long[16];
+    private int gestureCount;
+    private long origin; // Subtracted from every time
+
+    /** An empty trace using {@code engine}'s current configuration, starting at {@code origin}. */
+    static KeyEventTrace of(GestureEngine engine, long origin) {
+        KeyEventTrace trace = new KeyEventTrace();
+        trace.origin = origin;
+        int[] keyCodes = {GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.KEYCODE_VOLUME_UP};
+        for (int i = 0; i < keyCodes.length; i++) {
+            for (int gesture = 0; gesture < GestureEngine.GESTURE_COUNT; gesture++) {
+                if (engine.isGestureEnabled(keyCodes[i], gesture)) {
+                    trace.enabledGestures[i] |= 1 << gesture;
+                }
+            }
+        }
+        for (int gesture = 0; gesture < GestureEngine.GESTURE_COUNT; gesture++) {
+            trace.timings[gesture] = engine.getTiming(gesture);
+        }
+        return trace;
+    }
+
+    /** Applies the recorded configuration, so a replay sees what the live engine saw. */
+    void configure(GestureEngine engine) {
+        int[] keyCodes = {GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.KEYCODE_VOLUME_UP};
+        for (int i = 0; i < keyCodes.length; i++) {
+            for (int gesture = 0; gesture < GestureEngine.GESTURE_COUNT; gesture++) {
+                engine.setGestureEnabled(keyCodes[i], gesture, (enabledGestures[i] & (1 << gesture)) != 0);
+            }
+        }
+        for (int gesture = 0; gesture < GestureEngine.GESTURE_COUNT; gesture++) {
+            engine.setTiming(gesture, timings[gesture]);
+        }
+    }
+
+    /** Returns false once the trace is full. */
+    boolean addEvent(int keyCode, int action, int repeatCount, long eventTime) {
+        if (eventCount == MAX_EVENTS) {
+            return false;
+        }
+        if (eventCount == events.length) {
+            events = Arrays.copyOf(events, eventCount * 2);
+            eventTimes = Arrays.copyOf(eventTimes, eventCount * 2);
+        }
+        if (keyCode != GestureEngine.KEYCODE_VOLUME_DOWN && keyCode != GestureEngine.KEYCODE_VOLUME_UP) {
+            keyCode = KEYCODE_OTHER;
+        }
+        events[eventCount] = keyCode | (action & 0xFF) << 16 | Math.min(repeatCount, 0x7F) << 24;
+        eventTimes[eventCount] = eventTime - origin;
+        eventCount++;
+        return true;
+    }
+
+    void addGesture(int gesture, int keyCode, long eventTime) {
+        if (gestureCount == gestures.length) {
+            gestures = Arrays.copyOf(gestures, gestureCount * 2);
+            gestureTimes = Arrays.copyOf(gestureTimes, gestureCount * 2);
+        }
+        gestures[gestureCount] = gesture | keyCode << 8;
+        gestureTimes[gestureCount] = eventTime - origin;
+        gestureCount++;
+    }
+
+    int eventCount() {
+        return eventCount;
+    }
+
+    int keyCode(int i) {
+        return events[i] & 0xFFFF;
+    }
+
+    int action(int i) {
+        return (events[i] >>> 16) & 0xFF;
+    }
+
+    int repeatCount(int i) {
+        return events[i] >>> 24;
+    }
+
+    long eventTime(int i) {
+        return eventTimes[i];
+    }
+
+    int gestureCount() {
+        return gestureCount;
+    }
+
+    int gesture(int i) {
+        return gestures[i] & 0xFF;
+    }
+
+    int gestureKeyCode(int i) {
+        return gestures[i] >>> 8;
+    }
+
+    long gestureTime(int i) {
+        return gestureTimes[i];
+    }
+
+    void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(enabledGestures[0]);
+            out.writeInt(enabledGestures[1]);
+            for (long timing : timings) {
+                out.writeLong(timing);
+            }
+            out.writeInt(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                out.writeInt(events[i]);
+                out.writeLong(eventTimes[i]);
+            }
+            out.writeInt(gestureCount);
+            for (int i = 0; i < gestureCount; i++) {
+                out.writeInt(gestures[i]);
+                out.writeLong(gestureTimes[i]);
+            }
+        }
+    }
+
+    static KeyEventTrace read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a key event trace: " + file);
+            }
+            KeyEventTrace trace = new KeyEventTrace();
+            trace.enabledGestures[0] = in.readInt();
+            trace.enabledGestures[1] = in.readInt();
+            for (int gesture = 0; gesture < GestureEngine.GESTURE_COUNT; gesture++) {
+                trace.timings[gesture] = in.readLong();
+            }
+            int events = in.readInt();
+            if (events < 0 || events > MAX_EVENTS) {
+                throw new IOException("Bad event count " + events);
+            }
+            trace.events = new int[Math.max(events, 1)];
+            trace.eventTimes = new long[trace.events.length];
+            for (int i = 0; i < events; i++) {
+                trace.events[i] = in.readInt();
+                trace.eventTimes[i] = in.readLong();
+            }
+            trace.eventCount = events;
+            int gestures = in.readInt();
+            if (gestures < 0 || gestures > MAX_EVENTS) {
+                throw new IOException("Bad gesture count " + gestures);
+            }
+            trace.gestures = new int[Math.max(gestures, 1)];
+            trace.gestureTimes = new long[trace.gestures.length];
+            for (int i = 0; i < gestures; i++) {
+                trace.gestures[i] = in.readInt();
+                trace.gestureTimes[i] = in.readLong();
+            }
+            trace.gestureCount = gestures;
+            return trace;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.takumi.buttonbuddy;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved launch Intents per package, so firing a gesture needs no PackageManager IPC.
+ * Entries are dropped when the package is added, replaced, changed or removed.
+ */
+final class LaunchIntentCache {
+
+    private static final String TAG = "ButtonBuddyService";
+
+    // Cached "no launch intent" marker, so a missing target is not re-resolved on every gesture
+    private static final Intent NOT_LAUNCHABLE = new Intent();
+
+    interface OnInvalidatedListener {
+        void onLaunchIntentInvalidated(String packageName);
+    }
+
+    private final Context context;
+    private final ConcurrentHashMap<String, Intent> intents = new ConcurrentHashMap<>();
+    private OnInvalidatedListener invalidatedListener;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName == null) {
+                return;
+            }
+            if (intents.remove(packageName) != null) {
+                Log.d(TAG, "Launch intent cache invalidated for " + packageName + " (" + intent.getAction() + ")");
+            }
+            OnInvalidatedListener listener = invalidatedListener;
+            if (listener != null) {
+                listener.onLaunchIntentInvalidated(packageName);
+            }
+        }
+    };
+
+    LaunchIntentCache(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    void register(OnInvalidatedListener listener) {
+        invalidatedListener = listener;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        ContextCompat.registerReceiver(context, packageReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    void unregister() {
+        invalidatedListener = null;
+        context.unregisterReceiver(packageReceiver);
+        intents.clear();
+    }
+
+    /** Resolves the launch Intent ahead of time. Does IPC on a miss, so keep it off the gesture path. */
+    void prewarm(String packageName) {
+        if (packageName != null && !packageName.isEmpty()) {
+            get(packageName);
+        }
+    }
+
+    /** Returns the launch Intent (with FLAG_ACTIVITY_NEW_TASK), or null if the package has none. */
+    Intent get(String packageName) {
+        Intent cached = intents.get(packageName);
+        if (cached == null) {
+            cached = resolve(packageName);
+            intents.put(packageName, cached);
+        }
+        return cached == NOT_LAUNCHABLE ? null : cached;
+    }
+
+    boolean isCached(String packageName) {
+        return intents.containsKey(packageName);
+    }
+
+    private Intent resolve(String packageName) {
+        Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(packageName);
+        if (launchIntent == null) {
+            return NOT_LAUNCHABLE;
+        }
+        launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return launchIntent;
+    }
+}
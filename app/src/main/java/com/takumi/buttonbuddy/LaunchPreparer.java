@@ -0,0 +1,147 @@
+package com.takumi.buttonbuddy;
+
+import android.app.ActivityOptions;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Speculatively prepares the launch while the key is still held: as soon as a long press is
+ * armed the target is looked up and its Intent and ActivityOptions are made ready, resolving
+ * off the gesture thread if the Intent is not cached yet. Releasing the key early only drops the
+ * armed press, so cancelling costs next to nothing.
+ *
+ * prepare, onLongPress and cancel are called on the service's gesture thread, launch on an
+ * {@link ActionPipeline} worker; describe may be called from any thread. Each armed press is one
+ * {@link Armed}, swapped atomically. A launch only consumes the press (clears it and times it
+ * from its key-down) when that press's long press fired for the same package, so neither a slow
+ * launch nor one from another gesture, such as a double tap, touches a press armed for a
+ * different key.
+ */
+final class LaunchPreparer {
+
+    private static final String TAG = "ButtonBuddyService";
+
+    private final LaunchIntentCache launchIntentCache;
+    private final Executor backgroundExecutor;
+
+    private final AtomicReference<Armed> armed = new AtomicReference<>();
+    private final Bundle launchOptions = ActivityOptions.makeBasic().toBundle(); // Plain options do not depend on the target
+
+    // Key-down to startActivity-returned latency and how much of it exceeded the hold threshold.
+    // Written under the lock by pipeline workers, volatile so dumpsys on the main thread sees them.
+    private volatile long launchCount;
+    private volatile long lastLatencyMillis;
+    private volatile long maxOverheadMillis;
+    private volatile long totalOverheadMillis;
+
+    LaunchPreparer(LaunchIntentCache launchIntentCache, Executor backgroundExecutor) {
+        this.launchIntentCache = launchIntentCache;
+        this.backgroundExecutor = backgroundExecutor;
+    }
+
+    /** Called on key-down for a press that can turn into a launch. */
+    void prepare(int keyCode, String packageName, long downTime) {
+        Armed press = new Armed(keyCode, packageName, downTime);
+        armed.set(press);
+        if (packageName == null || packageName.isEmpty()) {
+            return;
+        }
+        if (launchIntentCache.isCached(packageName)) {
+            press.intent = launchIntentCache.get(packageName);
+        } else {
+            // Resolve during the hold instead of after the threshold; a press that is no longer
+            // armed by then just goes unused
+            backgroundExecutor.execute(() -> press.intent = launchIntentCache.get(packageName));
+        }
+    }
+
+    /** Called when the long press of {@code keyCode} fires, before its action is submitted. */
+    void onLongPress(int keyCode) {
+        Armed press = armed.get();
+        if (press != null && press.keyCode == keyCode) {
+            press.fired = true;
+        }
+    }
+
+    /** Called when the press is released (or interrupted) before the threshold. */
+    void cancel() {
+        armed.set(null);
+    }
+
+    /**
+     * Starts the prepared launch. Falls back to the cache if preparation was skipped or has not
+     * finished, which only happens when the hold threshold is shorter than a PackageManager call.
+     */
+    boolean launch(Context context, String packageName, long thresholdMillis) {
+        Armed press = armed.get();
+        boolean samePackage = press != null && packageName.equals(press.packageName);
+        Intent intent = samePackage ? press.intent : null;
+        if (intent == null) {
+            intent = launchIntentCache.get(packageName);
+        }
+        if (!samePackage || !press.fired) {
+            press = null; // Another gesture's launch; the armed press is not this one
+        } else {
+            armed.compareAndSet(press, null); // A press armed since then stays armed
+        }
+        if (intent == null) {
+            Log.e(TAG, "Could not find launch intent for package: " + packageName);
+            return false;
+        }
+        try {
+            context.startActivity(intent, launchOptions);
+        } catch (Exception e) {
+            Log.e(TAG, "Error launching " + packageName + ": " + e.getMessage());
+            return false;
+        }
+        if (press != null) { // Other gestures' launches have no key-down to time from
+            recordLatency(SystemClock.uptimeMillis() - press.downTime, thresholdMillis);
+        }
+        return true;
+    }
+
+    private synchronized void recordLatency(long latencyMillis, long thresholdMillis) {
+        long overhead = Math.max(0, latencyMillis - thresholdMillis);
+        launchCount++;
+        lastLatencyMillis = latencyMillis;
+        totalOverheadMillis += overhead;
+        if (overhead > maxOverheadMillis) {
+            maxOverheadMillis = overhead;
+        }
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "Key-down to startActivity: " + latencyMillis + " ms (threshold " + thresholdMillis
+                    + " ms, overhead " + overhead + " ms, max " + maxOverheadMillis + " ms)");
+        }
+    }
+
+    String describe() {
+        long count = launchCount;
+        if (count == 0) {
+            return "Launch latency: no launches yet\n";
+        }
+        return "Launch latency: " + count + " launches, last " + lastLatencyMillis
+                + " ms, overhead over threshold avg " + (totalOverheadMillis / count)
+                + " ms, max " + maxOverheadMillis + " ms\n";
+    }
+
+    // One armed press; the Intent arrives later when it had to be resolved in the background
+    private static final class Armed {
+        final int keyCode;
+        final String packageName;
+        final long downTime;
+        volatile Intent intent;
+        volatile boolean fired; // Its long press was recognized, so the next launch of packageName is it
+
+        Armed(int keyCode, String packageName, long downTime) {
+            this.keyCode = keyCode;
+            this.packageName = packageName;
+            this.downTime = downTime;
+        }
+    }
+}
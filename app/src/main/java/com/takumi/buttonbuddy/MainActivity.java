@@ -8,11 +8,8 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import android.annotation.SuppressLint;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.PowerManager;
@@ -28,7 +25,17 @@ public class MainActivity extends AppCompatActivity {
     private TextView statusTextView;
     private Button enableServiceButton;
     private Button ignoreBatteryOptimizationButton;
+    private Button clearAppProfilesButton;
+    private Button diagnosticsButton;
+    private TextView diagnosticsTextView;
     String currentTargetApp = "";
+    private LaunchIntentCache launchIntentCache;
+    private GestureActions gestureActions;
+    private ActionPipeline actionPipeline; // Macros sleep, so actions never run on the main thread
+    private final ServiceStatusRepository.Listener statusListener = status -> {
+        renderServiceStatus(status);
+        updateDiagnostics(); // The diagnostics flag is loaded in the background before the first snapshot
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,12 +59,56 @@ public class MainActivity extends AppCompatActivity {
         ignoreBatteryOptimizationButton.setOnClickListener(v -> requestIgnoreBatteryOptimizations());
         setAppLaunchButton.setOnClickListener(v -> openAppPickerActivity());
         launchAppButton.setOnClickListener(v -> launchApp()); // Set listener for new button
+
+        // Same parsing as the service, so every kind of binding can be tried from here
+        launchIntentCache = new LaunchIntentCache(this);
+        launchIntentCache.register(null); // Only drops stale Intents; nothing here to re-prepare
+        LaunchPreparer launchPreparer = new LaunchPreparer(launchIntentCache, Runnable::run); // Never prepares; no key is held
+        gestureActions = new GestureActions(this, launchPreparer, 0);
+        gestureActions.register();
+        actionPipeline = new ActionPipeline(1, 1, this::onActionFinished);
+
+        // Per-app shortcuts: pick the app that has to be in front, then the app to launch
+        Button addAppProfileButton = findViewById(R.id.addAppProfileButton);
+        clearAppProfilesButton = findViewById(R.id.clearAppProfilesButton);
+        addAppProfileButton.setOnClickListener(v -> openForegroundAppPicker());
+        clearAppProfilesButton.setOnClickListener(v -> {
+            AppPrefs.updateProfiles(this, BindingProfiles::withoutForegroundProfiles);
+        });
+
+        diagnosticsButton = findViewById(R.id.diagnosticsButton);
+        diagnosticsTextView = findViewById(R.id.diagnosticsTextView);
+        diagnosticsButton.setOnClickListener(v -> {
+            AppPrefs.setMetricsEnabled(this, !MetricsRecorder.get().isEnabled());
+            updateDiagnostics();
+        });
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        updateServiceStatus();
+        ServiceStatusRepository statusRepository = ServiceStatusRepository.get(this);
+        statusRepository.addListener(statusListener);
+        statusRepository.recheckBatteryOptimizations(); // Any change arrives through the listener
+        ServiceStatusRepository.Snapshot status = statusRepository.getSnapshot();
+        if (status != null) {
+            renderServiceStatus(status); // Otherwise the listener renders the first snapshot
+        }
+        updateDiagnostics();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        ServiceStatusRepository.get(this).removeListener(statusListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        actionPipeline.shutdown();
+        gestureActions.unregister();
+        launchIntentCache.unregister();
     }
 
     private void launchApp() {
@@ -65,18 +116,15 @@ public class MainActivity extends AppCompatActivity {
             Log.w(TAG, "No target package set or package name is empty. Cannot launch app.");
             return;
         }
+        actionPipeline.submit(gestureActions.get(currentTargetApp));
+    }
 
-        Intent launchIntent = getPackageManager().getLaunchIntentForPackage(currentTargetApp);
-        if (launchIntent != null) {
-            launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            try {
-                startActivity(launchIntent);
-                Log.d(TAG, "Successfully launched " + currentTargetApp);
-            } catch (Exception e) {
-                Log.e(TAG, "Error launching " + currentTargetApp + ": " + e.getMessage());
-            }
+    // Pipeline thread
+    private void onActionFinished(GestureAction action, int outcome, long latencyNanos) {
+        if (outcome == ActionPipeline.OUTCOME_OK) {
+            Log.d(TAG, "Successfully ran " + action);
         } else {
-            Log.e(TAG, "Could not find launch intent for package: " + currentTargetApp);
+            Log.e(TAG, "Could not run " + action + " (outcome " + outcome + ")"); // ActionPipeline.OUTCOME_*
         }
     }
 
@@ -91,32 +139,25 @@ public class MainActivity extends AppCompatActivity {
         startActivity(intent);
     }
 
-    private void updateServiceStatus() {
-        boolean isServiceEnabled = isAccessibilityServiceEnabled(this);
-        boolean isIgnoringBattery = isIgnoringBatteryOptimizations();
-        currentTargetApp = AppPrefs.getTargetPackage(this);
-        String appName;
+    private void openForegroundAppPicker() {
+        Intent intent = new Intent(this, AppPickerActivity.class);
+        intent.putExtra(AppPickerActivity.EXTRA_PICK_FOREGROUND_APP, true);
+        startActivity(intent);
+    }
 
-        // Check if the current target package is the default Google Wallet package
-        if (currentTargetApp.equals(AppPrefs.DEFAULT_TARGET_PACKAGE)) {
-            appName = "Google Wallet (Default)";
-        } else {
-            // Attempt to get the app name for a non-default package
-            try {
-                PackageManager pm = getPackageManager();
-                ApplicationInfo ai = pm.getApplicationInfo(currentTargetApp, 0);
-                appName = pm.getApplicationLabel(ai).toString();
-            } catch (PackageManager.NameNotFoundException e) {
-                Log.e("MainActivity", "Target app package not found: " + currentTargetApp + ", Error: " + e.getMessage());
-                appName = "N/A (App not found)"; // Fallback if app is uninstalled or package is invalid
-            }
-        }
+    // Renders the repository's cached snapshot; all the IPC behind it ran on a background thread
+    private void renderServiceStatus(ServiceStatusRepository.Snapshot status) {
+        currentTargetApp = status.targetPackage;
+        String appName = status.targetName;
+        String appProfiles = status.appProfiles;
+        boolean isIgnoringBattery = status.ignoringBatteryOptimizations;
+        clearAppProfilesButton.setVisibility(status.hasAppProfiles ? Button.VISIBLE : Button.GONE);
 
-        if (isServiceEnabled) {
+        if (status.serviceEnabled) {
             String statusText = "Accessibility Service Status: ENABLED\n\n" +
                     "Current launch app: " + appName +
                     "\n\nPress and hold the Volume Down button for at least 1 second to launch " +
-                    appName + ".";
+                    appName + "." + appProfiles;
             statusTextView.setText(statusText);
             statusTextView.setTextColor(ContextCompat.getColor(this, android.R.color.holo_green_dark));
             enableServiceButton.setEnabled(false);
@@ -134,7 +175,7 @@ public class MainActivity extends AppCompatActivity {
             ignoreBatteryOptimizationButton.setVisibility(Button.VISIBLE);
         } else {
             String statusText = "Accessibility Service Status: DISABLED\n\nPlease enable 'ButtonBuddy' in Accessibility settings to start logging events.\n\n" +
-                    "Current launch app: " + appName;
+                    "Current launch app: " + appName + appProfiles;
             statusTextView.setText(statusText);
             statusTextView.setTextColor(ContextCompat.getColor(this, android.R.color.holo_red_dark));
             enableServiceButton.setEnabled(true);
@@ -142,23 +183,17 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private boolean isAccessibilityServiceEnabled(Context context) {
-        ComponentName cn = new ComponentName(context, ButtonBuddyAccessibilityService.class);
-        String flat = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES);
-        if (flat != null && !flat.isEmpty()) {
-            String[] enabledServices = flat.split(":");
-            for (String enabledService : enabledServices) {
-                if (enabledService.equals(cn.flattenToString())) {
-                    return true;
-                }
-            }
+    // Same process as the service, so this reads the live counters; also in dumpsys output
+    private void updateDiagnostics() {
+        MetricsRecorder metrics = MetricsRecorder.get();
+        if (metrics.isEnabled()) {
+            diagnosticsButton.setText("Disable Diagnostics");
+            diagnosticsTextView.setText(metrics.describe());
+            diagnosticsTextView.setVisibility(TextView.VISIBLE);
+        } else {
+            diagnosticsButton.setText("Enable Diagnostics");
+            diagnosticsTextView.setVisibility(TextView.GONE);
         }
-        return false;
-    }
-
-    private boolean isIgnoringBatteryOptimizations() {
-        PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        return pm.isIgnoringBatteryOptimizations(getPackageName());
     }
 
     private void requestIgnoreBatteryOptimizations() {
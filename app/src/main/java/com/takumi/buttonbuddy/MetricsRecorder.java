@@ -0,0 +1,164 @@
+package com.takumi.buttonbuddy;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide counters and latency histograms for the key path. Everything is a plain
+ * atomic add, so recording never locks or allocates and may happen on any thread. While
+ * disabled every call returns after a single volatile read, and {@link #startNanos()} does not
+ * even read the clock.
+ *
+ * Histograms have power-of-two microsecond buckets: bucket {@code b} holds values below
+ * {@code 2^b} microseconds, so percentiles are upper bounds accurate to a factor of two.
+ */
+final class MetricsRecorder {
+
+    static final int COUNTER_KEY_EVENTS = 0;
+    static final int COUNTER_GESTURES = 1;
+    static final int COUNTER_LAUNCHES_SUCCEEDED = 2;
+    static final int COUNTER_LAUNCHES_FAILED = 3;
+    static final int COUNTER_HANDLER_POSTS = 4; // Messages and timers posted to the gesture thread
+    static final int COUNTER_KEY_EVENTS_SHORT_CIRCUITED = 5; // Repeats and unbound keys never posted
+    static final int COUNTER_COUNT = 6;
+
+    static final int HISTOGRAM_EVENT_HANDLING = 0; // Key message handled on the gesture thread
+    static final int HISTOGRAM_TIMER_DRIFT = 1; // Gesture timer fire time minus its deadline
+    static final int HISTOGRAM_LAUNCH = 2; // Gesture recognized to its action finished
+    static final int HISTOGRAM_ON_KEY_EVENT = 3; // onKeyEvent entry to return, on the main thread
+    static final int HISTOGRAM_COUNT = 4;
+
+    /** Returned by {@link #startNanos()} while disabled; recording against it is a no-op. */
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final int BUCKETS = 32; // Last bucket is open-ended (over ~18 minutes)
+    private static final String[] COUNTER_NAMES = {
+            "key events", "gestures", "launches ok", "launches failed", "gesture thread posts",
+            "key events short-circuited"};
+    private static final String[] HISTOGRAM_NAMES = {
+            "gesture thread handling", "timer drift", "trigger to action done", "onKeyEvent"};
+
+    private static final MetricsRecorder INSTANCE = new MetricsRecorder();
+
+    private volatile boolean enabled = false;
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_COUNT);
+    private final AtomicLongArray buckets = new AtomicLongArray(HISTOGRAM_COUNT * BUCKETS);
+    private final AtomicLongArray sums = new AtomicLongArray(HISTOGRAM_COUNT);
+    private final AtomicLongArray maxima = new AtomicLongArray(HISTOGRAM_COUNT);
+
+    /** Shared by the service (which records) and MainActivity (which displays). */
+    static MetricsRecorder get() {
+        return INSTANCE;
+    }
+
+    MetricsRecorder() {
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    void increment(int counter) {
+        if (enabled) {
+            counters.incrementAndGet(counter);
+        }
+    }
+
+    long startNanos() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /** Records the time since {@code startNanos}, a value from {@link #startNanos()}. */
+    void recordSince(int histogram, long startNanos) {
+        if (startNanos != NOT_TIMED && enabled) {
+            recordMicros(histogram, (System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    void recordMicros(int histogram, long micros) {
+        if (!enabled) {
+            return;
+        }
+        long value = Math.max(0, micros); // A timer can fire a hair early on a coarse clock
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+        buckets.incrementAndGet(histogram * BUCKETS + bucket);
+        sums.addAndGet(histogram, value);
+        long max;
+        do {
+            max = maxima.get(histogram);
+        } while (value > max && !maxima.compareAndSet(histogram, max, value));
+    }
+
+    long count(int counter) {
+        return counters.get(counter);
+    }
+
+    long histogramCount(int histogram) {
+        long count = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            count += buckets.get(histogram * BUCKETS + b);
+        }
+        return count;
+    }
+
+    /** Upper bound of the bucket holding the given percentile (0-100), or 0 when empty. */
+    long percentileMicros(int histogram, double percentile) {
+        long count = histogramCount(histogram);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets.get(histogram * BUCKETS + b);
+            if (seen >= rank) {
+                return Math.min(maxima.get(histogram), b == 0 ? 0 : (1L << b) - 1);
+            }
+        }
+        return maxima.get(histogram);
+    }
+
+    long maxMicros(int histogram) {
+        return maxima.get(histogram);
+    }
+
+    /** Not atomic as a whole; a value recorded meanwhile may survive partially. */
+    void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        for (int h = 0; h < HISTOGRAM_COUNT; h++) {
+            sums.set(h, 0);
+            maxima.set(h, 0);
+        }
+    }
+
+    String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Metrics: ").append(enabled ? "enabled" : "disabled").append('\n');
+        for (int c = 0; c < COUNTER_COUNT; c++) {
+            sb.append("  ").append(COUNTER_NAMES[c]).append(": ").append(count(c)).append('\n');
+        }
+        for (int h = 0; h < HISTOGRAM_COUNT; h++) {
+            long count = histogramCount(h);
+            sb.append("  ").append(HISTOGRAM_NAMES[h]).append(": ");
+            if (count == 0) {
+                sb.append("no samples\n");
+                continue;
+            }
+            sb.append(count).append(" samples, ")
+                    .append(String.format(Locale.US, "mean %.3f ms, p50 <=%.3f ms, p99 <=%.3f ms, max %.3f ms",
+                            sums.get(h) / (count * 1000.0), percentileMicros(h, 50) / 1000.0,
+                            percentileMicros(h, 99) / 1000.0, maxMicros(h) / 1000.0))
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+}
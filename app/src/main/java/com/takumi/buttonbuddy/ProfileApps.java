@@ -0,0 +1,67 @@
+package com.takumi.buttonbuddy;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import java.util.List;
+
+/**
+ * Maps the user serial numbers stored in {@link AppInfo} keys and bindings to the profiles
+ * (personal, work) they stand for. Serial numbers are used because, unlike user ids, they are
+ * never reused after a profile is removed.
+ */
+final class ProfileApps {
+
+    private ProfileApps() {
+    }
+
+    /** The profile a serial number names, or null if that profile no longer exists. */
+    static UserHandle userOf(Context context, long userSerial) {
+        if (userSerial == AppInfo.MY_PROFILE) {
+            return Process.myUserHandle();
+        }
+        return context.getSystemService(UserManager.class).getUserForSerialNumber(userSerial);
+    }
+
+    static long serialOf(Context context, UserHandle user) {
+        if (user.equals(Process.myUserHandle())) {
+            return AppInfo.MY_PROFILE;
+        }
+        return context.getSystemService(UserManager.class).getSerialNumberForUser(user);
+    }
+
+    /** The package's first launcher activity in {@code user}, or null. Does IPC. */
+    static LauncherActivityInfo mainActivity(Context context, String packageName, UserHandle user) {
+        List<LauncherActivityInfo> activities = context.getSystemService(LauncherApps.class).getActivityList(packageName, user);
+        return activities.isEmpty() ? null : activities.get(0);
+    }
+
+    /**
+     * The app's label for an {@link AppInfo#getKey() app key}, with the profile badge ("Work
+     * Gmail") for apps outside ButtonBuddy's profile. Null if the app is not installed there.
+     */
+    static String label(Context context, String key) {
+        String packageName = AppInfo.packageOf(key);
+        long userSerial = AppInfo.userSerialOf(key);
+        PackageManager pm = context.getPackageManager();
+        try {
+            if (userSerial == AppInfo.MY_PROFILE) {
+                return pm.getApplicationLabel(pm.getApplicationInfo(packageName, 0)).toString();
+            }
+            UserHandle user = userOf(context, userSerial);
+            if (user == null) {
+                return null;
+            }
+            ApplicationInfo info = context.getSystemService(LauncherApps.class).getApplicationInfo(packageName, 0, user);
+            return pm.getUserBadgedLabel(pm.getApplicationLabel(info), user).toString();
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.takumi.buttonbuddy;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Everything MainActivity shows about the service, computed on a background thread and cached
+ * for the life of the process. It is only recomputed when something it depends on changes:
+ * the enabled accessibility services setting, the battery optimization whitelist or the
+ * bindings. Resuming the main screen therefore renders the cached snapshot without waiting for
+ * IPC; it only asks for a background re-check of the battery optimization exemption.
+ */
+final class ServiceStatusRepository {
+
+    private static final String TAG = "ServiceStatusRepository";
+    // PowerManager.ACTION_POWER_SAVE_WHITELIST_CHANGED is hidden and not guaranteed to arrive, so
+    // it only saves waiting for the next resume; see recheckBatteryOptimizations
+    private static final String ACTION_POWER_SAVE_WHITELIST_CHANGED = "android.os.action.POWER_SAVE_WHITELIST_CHANGED";
+
+    interface Listener {
+        /** Delivered on the main thread. */
+        void onStatusChanged(Snapshot snapshot);
+    }
+
+    static final class Snapshot {
+        final boolean serviceEnabled;
+        final boolean ignoringBatteryOptimizations;
+        final String targetPackage;
+        final String targetName;
+        final String appProfiles; // "In <app>: <target>" lines, empty when there are none
+        final boolean hasAppProfiles;
+
+        Snapshot(boolean serviceEnabled, boolean ignoringBatteryOptimizations, String targetPackage,
+                 String targetName, String appProfiles, boolean hasAppProfiles) {
+            this.serviceEnabled = serviceEnabled;
+            this.ignoringBatteryOptimizations = ignoringBatteryOptimizations;
+            this.targetPackage = targetPackage;
+            this.targetName = targetName;
+            this.appProfiles = appProfiles;
+            this.hasAppProfiles = hasAppProfiles;
+        }
+    }
+
+    private static ServiceStatusRepository instance;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean(); // Collapses bursts of change notifications
+    private final AppPrefs.OnBindingsChangedListener bindingsChangedListener = profiles -> refresh();
+    private volatile Snapshot snapshot;
+
+    static synchronized ServiceStatusRepository get(Context context) {
+        if (instance == null) {
+            instance = new ServiceStatusRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ServiceStatusRepository(Context context) {
+        this.context = context;
+        executor.execute(this::registerObservers); // Registering is IPC as well
+        executor.execute(() -> AppPrefs.loadMetricsEnabled(context)); // Before the first snapshot, which redraws diagnostics
+        refresh();
+    }
+
+    // Registered for the life of the process, so the cache never goes stale between resumes
+    private void registerObservers() {
+        context.getContentResolver().registerContentObserver(
+                Settings.Secure.getUriFor(Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES), false,
+                new ContentObserver(mainHandler) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        refresh();
+                    }
+                });
+        ContextCompat.registerReceiver(context, new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                refresh();
+            }
+        }, new IntentFilter(ACTION_POWER_SAVE_WHITELIST_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
+        AppPrefs.addOnBindingsChangedListener(context, bindingsChangedListener);
+    }
+
+    /** The last computed status, or null until the first computation finishes. */
+    Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Re-checks the battery optimization exemption in the background and recomputes the snapshot
+     * if it changed. Called on every resume of the main screen, since the whitelist broadcast is
+     * not public API and may never be delivered.
+     */
+    void recheckBatteryOptimizations() {
+        executor.execute(() -> {
+            Snapshot current = snapshot;
+            if (current != null && current.ignoringBatteryOptimizations != isIgnoringBatteryOptimizations()) {
+                refresh();
+            }
+        });
+    }
+
+    void refresh() {
+        if (!refreshQueued.compareAndSet(false, true)) {
+            return; // Already queued; it will see this change too
+        }
+        executor.execute(() -> {
+            refreshQueued.set(false);
+            Snapshot computed = compute();
+            snapshot = computed;
+            mainHandler.post(() -> {
+                for (Listener listener : listeners) {
+                    listener.onStatusChanged(computed);
+                }
+            });
+        });
+    }
+
+    private Snapshot compute() {
+        String targetPackage = AppPrefs.getTargetPackage(context);
+        String targetName;
+        // Check if the current target package is the default Google Wallet package
+        if (targetPackage.equals(AppPrefs.DEFAULT_TARGET_PACKAGE)) {
+            targetName = "Google Wallet (Default)";
+        } else if (!GestureAction.isAppLaunch(targetPackage)) {
+            targetName = targetPackage; // A deep link, component or macro; the spec says it best
+        } else {
+            // Attempt to get the app name for a non-default package, badged for a work profile app
+            targetName = ProfileApps.label(context, targetPackage);
+            if (targetName == null) {
+                Log.e(TAG, "Target app package not found: " + targetPackage);
+                targetName = "N/A (App not found)"; // Fallback if app is uninstalled or package is invalid
+            }
+        }
+        BindingProfiles profiles = AppPrefs.getProfiles(context);
+        return new Snapshot(isAccessibilityServiceEnabled(), isIgnoringBatteryOptimizations(),
+                targetPackage, targetName, describeAppProfiles(profiles), profiles.hasForegroundProfiles());
+    }
+
+    // "In <app>: <target>" for every per-app volume-down long-press shortcut
+    private String describeAppProfiles(BindingProfiles profiles) {
+        StringBuilder sb = new StringBuilder();
+        for (String foregroundPackage : profiles.foregroundPackages()) {
+            String target = profiles.get(foregroundPackage, GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS);
+            if (target != null) {
+                sb.append("\nIn ").append(getAppLabel(foregroundPackage)).append(": ").append(getAppLabel(target));
+            }
+        }
+        return sb.length() == 0 ? "" : "\n\nApp-specific launch apps:" + sb;
+    }
+
+    private String getAppLabel(String target) {
+        if (!GestureAction.isAppLaunch(target)) {
+            return target;
+        }
+        String label = ProfileApps.label(context, target);
+        return label != null ? label : target;
+    }
+
+    private boolean isAccessibilityServiceEnabled() {
+        ComponentName cn = new ComponentName(context, ButtonBuddyAccessibilityService.class);
+        String flat = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES);
+        if (flat != null && !flat.isEmpty()) {
+            String[] enabledServices = flat.split(":");
+            for (String enabledService : enabledServices) {
+                if (enabledService.equals(cn.flattenToString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isIgnoringBatteryOptimizations() {
+        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return pm.isIgnoringBatteryOptimizations(context.getPackageName());
+    }
+}
@@ -0,0 +1,191 @@
+package com.takumi.buttonbuddy;
+
+import java.util.Arrays;
+
+/**
+ * Hashed timer wheel with a fixed number of timer slots. Timers are identified by an int id
+ * in [0, capacity) and linked intrusively through preallocated arrays, so scheduling,
+ * cancelling and expiring never allocate. The owner only has to arm a single platform timer
+ * for {@link #nextDeadline()} and call {@link #advance(long, Callback)} when it fires.
+ */
+final class TimerWheel {
+
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    interface Callback {
+        void onTimerExpired(int timerId, long deadline);
+    }
+
+    private static final int NONE = -1;
+
+    private static final byte STATE_IDLE = 0;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_EXPIRING = 2;
+
+    private final long tickMillis;
+    private final int wheelMask;
+    private final int[] bucketHeads;
+
+    private final long[] deadlines;
+    private final byte[] states;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private final int[] expiredNext;
+
+    private long cursorTick = Long.MIN_VALUE; // Tick of the last advance(); its bucket may still hold later deadlines
+    private int pendingCount = 0;
+
+    TimerWheel(int capacity, int wheelSize, long tickMillis) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two: " + wheelSize);
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.wheelMask = wheelSize - 1;
+        this.bucketHeads = new int[wheelSize];
+        Arrays.fill(bucketHeads, NONE);
+
+        this.deadlines = new long[capacity];
+        Arrays.fill(deadlines, NO_DEADLINE);
+        this.states = new byte[capacity];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.bucketOf = new int[capacity];
+        this.expiredNext = new int[capacity];
+    }
+
+    int capacity() {
+        return deadlines.length;
+    }
+
+    boolean isPending(int timerId) {
+        return states[timerId] == STATE_PENDING;
+    }
+
+    long deadlineOf(int timerId) {
+        return states[timerId] == STATE_PENDING ? deadlines[timerId] : NO_DEADLINE;
+    }
+
+    /** Arms (or re-arms) a timer. Any previous deadline for the same id is replaced. */
+    void schedule(int timerId, long deadline) {
+        if (states[timerId] == STATE_PENDING) {
+            unlink(timerId);
+        }
+        // Deadlines behind the cursor go into the cursor's bucket so the next advance() sees them
+        long tick = Math.max(tickOf(deadline), cursorTick);
+        int bucket = (int) (tick & wheelMask);
+        deadlines[timerId] = deadline;
+        states[timerId] = STATE_PENDING;
+        bucketOf[timerId] = bucket;
+        prev[timerId] = NONE;
+        next[timerId] = bucketHeads[bucket];
+        if (bucketHeads[bucket] != NONE) {
+            prev[bucketHeads[bucket]] = timerId;
+        }
+        bucketHeads[bucket] = timerId;
+        pendingCount++;
+    }
+
+    void cancel(int timerId) {
+        if (states[timerId] == STATE_PENDING) {
+            unlink(timerId);
+        }
+        states[timerId] = STATE_IDLE;
+        deadlines[timerId] = NO_DEADLINE;
+    }
+
+    void cancelAll() {
+        for (int id = 0; id < deadlines.length; id++) {
+            cancel(id);
+        }
+    }
+
+    /** Earliest pending deadline, or {@link #NO_DEADLINE} when nothing is armed. */
+    long nextDeadline() {
+        if (pendingCount == 0) {
+            return NO_DEADLINE;
+        }
+        long earliest = NO_DEADLINE;
+        for (int id = 0; id < deadlines.length; id++) {
+            if (states[id] == STATE_PENDING && deadlines[id] < earliest) {
+                earliest = deadlines[id];
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Expires every timer whose deadline is at or before {@code now}. Callbacks may freely
+     * schedule or cancel timers, including the ones expiring in the same pass.
+     */
+    void advance(long now, Callback callback) {
+        long nowTick = tickOf(now);
+        if (pendingCount == 0) {
+            cursorTick = nowTick;
+            return;
+        }
+        if (cursorTick == Long.MIN_VALUE || nowTick - cursorTick > wheelMask) {
+            // First call or a gap longer than one revolution: every bucket has to be looked at.
+            cursorTick = nowTick - wheelMask;
+        }
+
+        int expiredHead = NONE;
+        int expiredTail = NONE;
+        for (long tick = cursorTick; tick <= nowTick; tick++) {
+            int id = bucketHeads[(int) (tick & wheelMask)];
+            while (id != NONE) {
+                int following = next[id];
+                if (deadlines[id] <= now) {
+                    unlink(id);
+                    states[id] = STATE_EXPIRING;
+                    expiredNext[id] = NONE;
+                    if (expiredTail == NONE) {
+                        expiredHead = id;
+                    } else {
+                        expiredNext[expiredTail] = id;
+                    }
+                    expiredTail = id;
+                }
+                id = following;
+            }
+        }
+        if (nowTick > cursorTick) {
+            cursorTick = nowTick;
+        }
+
+        int id = expiredHead;
+        while (id != NONE) {
+            int following = expiredNext[id];
+            if (states[id] == STATE_EXPIRING) { // Skip timers cancelled or re-armed by an earlier callback
+                long deadline = deadlines[id];
+                states[id] = STATE_IDLE;
+                deadlines[id] = NO_DEADLINE;
+                callback.onTimerExpired(id, deadline);
+            }
+            id = following;
+        }
+    }
+
+    private long tickOf(long time) {
+        return Math.floorDiv(time, tickMillis);
+    }
+
+    private void unlink(int timerId) {
+        int before = prev[timerId];
+        int after = next[timerId];
+        if (before == NONE) {
+            bucketHeads[bucketOf[timerId]] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+        next[timerId] = NONE;
+        prev[timerId] = NONE;
+        pendingCount--;
+    }
+}
@@ -0,0 +1,214 @@
+package com.takumi.buttonbuddy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * How often, and how recently, each app was picked or launched: an exponentially decayed count
+ * per {@link AppInfo#getKey() app key}. Instead of decaying every score as time passes, each use
+ * adds a weight that doubles every half-life (2^((t - epoch) / halfLife)); dividing all scores by
+ * the same factor never changes their order, so old scores stay valid without a rescan. Because
+ * scores only ever grow, the top-K lives in a bounded min-heap updated per use in O(K), and
+ * {@link #topKeys()} is a ready-made snapshot.
+ */
+final class UsageStore {
+
+    private static final int MAGIC = 0x42425553; // "BBUS"
+    private static final int VERSION = 1;
+    static final long HALF_LIFE_MILLIS = 3L * 24 * 60 * 60 * 1000; // A few shifts
+    private static final double MAX_EXPONENT = 512; // Rescale long before doubles overflow (2^1023)
+    static final int MAX_ENTRIES = 256; // Least used apps are forgotten beyond this
+
+    private static final class Entry {
+        final String key;
+        double score;
+        boolean inTop;
+
+        Entry(String key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+    }
+
+    private static final Comparator<Entry> BY_SCORE = (a, b) -> Double.compare(a.score, b.score);
+
+    private final File file;
+    private final Executor writeExecutor;
+    private final int topCount;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final PriorityQueue<Entry> top; // Min-heap: the weakest of the top K on top
+    private final AtomicBoolean writeQueued = new AtomicBoolean();
+    private long epochMillis = -1; // Set by the first use
+    private volatile List<String> topKeys = Collections.emptyList(); // Most used first
+
+    UsageStore(File file, Executor writeExecutor, int topCount) {
+        this.file = file;
+        this.writeExecutor = writeExecutor;
+        this.topCount = topCount;
+        this.top = new PriorityQueue<>(topCount, BY_SCORE);
+    }
+
+    /** Reads the file, if any. Called once, before any other method. */
+    synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            long epoch = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                double score = in.readDouble();
+                entries.put(key, new Entry(key, score));
+            }
+            epochMillis = epoch;
+        } catch (IOException e) {
+            entries.clear(); // Truncated or corrupt; start over
+        }
+        rebuildTop();
+    }
+
+    /** Counts a pick or launch of {@code key} at {@code nowMillis} (wall clock, survives reboots). */
+    synchronized void record(String key, long nowMillis) {
+        if (epochMillis < 0) {
+            epochMillis = nowMillis;
+        }
+        double exponent = (double) (nowMillis - epochMillis) / HALF_LIFE_MILLIS;
+        if (exponent > MAX_EXPONENT) {
+            rescale(nowMillis);
+            exponent = 0;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key, 0);
+            entries.put(key, entry);
+        }
+        if (entry.inTop) {
+            top.remove(entry); // Re-inserted below with its new score
+        }
+        entry.score += Math.pow(2, exponent);
+        if (entry.inTop || top.size() < topCount) {
+            top.add(entry);
+            entry.inTop = true;
+        } else if (entry.score > top.peek().score) {
+            top.poll().inTop = false;
+            top.add(entry);
+            entry.inTop = true;
+        }
+        if (entries.size() > MAX_ENTRIES) {
+            forgetLeastUsed();
+        }
+        publishTop();
+        scheduleWrite();
+    }
+
+    /** The up to K most used app keys, most used first. Safe to call from any thread. */
+    List<String> topKeys() {
+        return topKeys;
+    }
+
+    // Moves the epoch to now; every score shrinks by the same factor, so the order is kept
+    private void rescale(long nowMillis) {
+        double factor = Math.pow(2, -(double) (nowMillis - epochMillis) / HALF_LIFE_MILLIS);
+        for (Entry entry : entries.values()) {
+            entry.score *= factor;
+        }
+        epochMillis = nowMillis;
+    }
+
+    // Drops the least used quarter; the top K are never among them
+    private void forgetLeastUsed() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(BY_SCORE);
+        for (Entry entry : sorted.subList(0, sorted.size() - MAX_ENTRIES * 3 / 4)) {
+            entries.remove(entry.key);
+        }
+    }
+
+    private void rebuildTop() {
+        top.clear();
+        for (Entry entry : entries.values()) {
+            entry.inTop = false;
+            if (top.size() < topCount) {
+                top.add(entry);
+                entry.inTop = true;
+            } else if (entry.score > top.peek().score) {
+                top.poll().inTop = false;
+                top.add(entry);
+                entry.inTop = true;
+            }
+        }
+        publishTop();
+    }
+
+    private void publishTop() {
+        List<Entry> sorted = new ArrayList<>(top);
+        sorted.sort(BY_SCORE.reversed());
+        List<String> keys = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            keys.add(entry.key);
+        }
+        topKeys = Collections.unmodifiableList(keys);
+    }
+
+    private void scheduleWrite() {
+        if (!writeQueued.compareAndSet(false, true)) {
+            return; // Already queued; it writes whatever is current then
+        }
+        writeExecutor.execute(() -> {
+            writeQueued.set(false);
+            try {
+                write();
+            } catch (IOException e) {
+                // Scores are a convenience; the next use retries
+            }
+        });
+    }
+
+    private void write() throws IOException {
+        long epoch;
+        List<Entry> snapshot = new ArrayList<>();
+        synchronized (this) {
+            epoch = epochMillis;
+            for (Entry entry : entries.values()) {
+                snapshot.add(new Entry(entry.key, entry.score));
+            }
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(epoch);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                out.writeUTF(entry.key);
+                out.writeDouble(entry.score);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.takumi.buttonbuddy;
+
+import static com.takumi.buttonbuddy.ActionPipeline.OUTCOME_FAILED;
+import static com.takumi.buttonbuddy.ActionPipeline.OUTCOME_OK;
+import static com.takumi.buttonbuddy.ActionPipeline.OUTCOME_TIMED_OUT;
+import static com.takumi.buttonbuddy.ActionPipeline.POLICY_COALESCE;
+import static com.takumi.buttonbuddy.ActionPipeline.POLICY_DROP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ActionPipelineTest {
+
+    private final List<Integer> outcomes = Collections.synchronizedList(new ArrayList<>());
+    private final Semaphore finished = new Semaphore(0);
+    private final ActionPipeline pipeline = new ActionPipeline(2, 4, (action, outcome, latencyNanos) -> {
+        outcomes.add(outcome);
+        finished.release();
+    });
+
+    /** Blocks in run() until released, counting how often it ran. */
+    private static final class BlockingAction extends GestureAction {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+
+        BlockingAction(String spec, int policy, long timeoutMillis) {
+            super(spec, policy, timeoutMillis);
+        }
+
+        @Override
+        boolean run() throws Exception {
+            runs.incrementAndGet();
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void dropPolicy_ignoresTriggersWhileRunning() throws Exception {
+        BlockingAction action = new BlockingAction("com.example.app", POLICY_DROP, 5000);
+
+        assertTrue(pipeline.submit(action));
+        assertTrue(action.started.await(5, TimeUnit.SECONDS));
+        assertFalse(pipeline.submit(action));
+        assertFalse(pipeline.submit(action));
+        action.release.countDown();
+        assertTrue(finished.tryAcquire(5, TimeUnit.SECONDS));
+
+        assertEquals(1, action.runs.get());
+        assertEquals(2, pipeline.droppedCount("com.example.app"));
+        assertEquals(Collections.singletonList(OUTCOME_OK), outcomes);
+    }
+
+    @Test
+    public void coalescePolicy_collapsesTriggersIntoOneRerun() throws Exception {
+        BlockingAction action = new BlockingAction("macro:a|b", POLICY_COALESCE, 5000);
+
+        assertTrue(pipeline.submit(action));
+        assertTrue(action.started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(pipeline.submit(action));
+        }
+        action.release.countDown(); // Lets the re-run finish right away too
+        assertTrue(finished.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        assertEquals(2, action.runs.get());
+        assertEquals(2, pipeline.runCount("macro:a|b"));
+        assertEquals(3, pipeline.coalescedCount("macro:a|b"));
+    }
+
+    @Test
+    public void timeout_interruptsTheRun() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        GestureAction slow = new GestureAction("uri:slow", POLICY_DROP, 50) {
+            @Override
+            boolean run() {
+                try {
+                    Thread.sleep(5000);
+                    return true;
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    return false;
+                }
+            }
+        };
+
+        assertTrue(pipeline.submit(slow));
+        assertTrue(finished.tryAcquire(5, TimeUnit.SECONDS));
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(OUTCOME_TIMED_OUT), outcomes);
+        assertTrue(pipeline.submit(slow)); // Idle again
+    }
+
+    @Test
+    public void timeout_nextRunWaitsForAnActionThatIgnoresInterrupts() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        GestureAction stubborn = new GestureAction("macro:stubborn", POLICY_COALESCE, 50) {
+            @Override
+            boolean run() {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                started.countDown();
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                while (System.nanoTime() < end) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException ignored) {
+                        // Keeps going past its timeout
+                    }
+                }
+                running.decrementAndGet();
+                return true;
+            }
+        };
+
+        assertTrue(pipeline.submit(stubborn));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(150); // Timed out, still running
+        assertTrue(pipeline.submit(stubborn));
+        assertTrue(finished.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(2, pipeline.runCount("macro:stubborn"));
+        assertEquals(1, pipeline.coalescedCount("macro:stubborn"));
+        assertEquals(OUTCOME_TIMED_OUT, (int) outcomes.get(0));
+    }
+
+    @Test
+    public void timeoutExcludesQueueWait_andRejectionsArriveOnAPipelineThread() throws Exception {
+        List<Integer> singleOutcomes = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> rejectedOn = Collections.synchronizedList(new ArrayList<>());
+        Semaphore singleFinished = new Semaphore(0);
+        ActionPipeline single = new ActionPipeline(1, 1, (action, outcome, latencyNanos) -> {
+            singleOutcomes.add(outcome);
+            if (outcome == ActionPipeline.OUTCOME_REJECTED) {
+                rejectedOn.add(Thread.currentThread());
+            }
+            singleFinished.release();
+        });
+        try {
+            BlockingAction blocker = new BlockingAction("com.example.first", POLICY_DROP, 5000);
+            GestureAction quick = new GestureAction("com.example.queued", POLICY_DROP, 100) {
+                @Override
+                boolean run() {
+                    return true;
+                }
+            };
+            GestureAction extra = new GestureAction("com.example.extra", POLICY_DROP, 100) {
+                @Override
+                boolean run() {
+                    return true;
+                }
+            };
+
+            assertTrue(single.submit(blocker));
+            assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+            assertTrue(single.submit(quick)); // Queued behind the blocker, well past its 100 ms
+            assertFalse(single.submit(extra)); // Queue full
+            assertTrue(singleFinished.tryAcquire(5, TimeUnit.SECONDS));
+            Thread.sleep(300);
+            blocker.release.countDown();
+            assertTrue(singleFinished.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+            assertEquals(Arrays.asList(ActionPipeline.OUTCOME_REJECTED, OUTCOME_OK, OUTCOME_OK), singleOutcomes);
+            assertNotSame(Thread.currentThread(), rejectedOn.get(0));
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void exceptionsAndFalseCountAsFailures() throws Exception {
+        GestureAction throwing = new GestureAction("component:bad", POLICY_DROP, 1000) {
+            @Override
+            boolean run() {
+                throw new IllegalStateException("boom");
+            }
+        };
+        GestureAction refusing = new GestureAction("com.example.gone", POLICY_DROP, 1000) {
+            @Override
+            boolean run() {
+                return false;
+            }
+        };
+
+        pipeline.submit(throwing);
+        pipeline.submit(refusing);
+        assertTrue(finished.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        assertEquals(2, outcomes.size());
+        assertTrue(outcomes.stream().allMatch(outcome -> outcome == OUTCOME_FAILED));
+        assertTrue(pipeline.describe().contains("boom"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.takumi.buttonbuddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class AppCatalogIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeThenRead_roundTripsEveryField() throws IOException {
+        File file = new File(folder.getRoot(), "catalog.idx");
+        AppCatalogIndex.write(file, new AppCatalogIndex.Snapshot(7, 42, "en-US", Arrays.asList(
+                new AppInfo("Camera", "com.example.camera", 1000L),
+                new AppInfo("Wallet", "com.example.wallet", 2000L))));
+
+        AppCatalogIndex.Snapshot snapshot = AppCatalogIndex.read(file);
+
+        assertNotNull(snapshot);
+        assertEquals(7, snapshot.bootCount);
+        assertEquals(42, snapshot.sequenceNumber);
+        assertEquals("en-US", snapshot.locale);
+        assertEquals(2, snapshot.apps.size());
+        AppInfo wallet = snapshot.apps.get(1);
+        assertEquals("Wallet", wallet.getAppName());
+        assertEquals("com.example.wallet", wallet.getPackageName());
+        assertEquals("wallet", wallet.getSortKey());
+        assertEquals(2000L, wallet.getLastUpdateTime());
+        assertEquals(AppInfo.iconKeyOf("com.example.wallet", 2000L), wallet.getIconKey());
+    }
+
+    @Test
+    public void read_rejectsMissingOrCorruptFiles() throws IOException {
+        File file = new File(folder.getRoot(), "catalog.idx");
+        assertNull(AppCatalogIndex.read(file));
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        assertNull(AppCatalogIndex.read(file));
+    }
+}
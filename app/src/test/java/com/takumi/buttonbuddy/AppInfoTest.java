@@ -0,0 +1,32 @@
+package com.takumi.buttonbuddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AppInfoTest {
+
+    @Test
+    public void key_isPlainPackageInOwnProfileAndCarriesSerialOtherwise() {
+        AppInfo personal = new AppInfo("Gmail", "com.google.android.gm", 1000L);
+        AppInfo work = new AppInfo("Gmail", "com.google.android.gm", 1000L, 10);
+
+        assertEquals("com.google.android.gm", personal.getKey());
+        assertEquals("com.google.android.gm@10", work.getKey());
+        assertEquals("com.google.android.gm", AppInfo.packageOf(work.getKey()));
+        assertEquals(10, AppInfo.userSerialOf(work.getKey()));
+        assertEquals(AppInfo.MY_PROFILE, AppInfo.userSerialOf(personal.getKey()));
+        assertNotEquals(personal.getIconKey(), work.getIconKey()); // The work icon is badged
+    }
+
+    @Test
+    public void byName_ordersProfileTwinsDeterministically() {
+        AppInfo personal = new AppInfo("Gmail", "com.google.android.gm", 1000L);
+        AppInfo work = new AppInfo("Gmail", "com.google.android.gm", 1000L, 10);
+
+        assertTrue(AppInfo.BY_NAME.compare(personal, work) < 0);
+        assertTrue(AppInfo.BY_NAME.compare(work, personal) > 0);
+    }
+}
@@ -0,0 +1,69 @@
+package com.takumi.buttonbuddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AppSearchIndexTest {
+
+    private static final AppSearchIndex INDEX = AppSearchIndex.build(sorted(
+            new AppInfo("Caf\u00e9 Finder", "org.example.cafe", 0),
+            new AppInfo("Calculator", "com.android.calculator2", 0),
+            new AppInfo("Google Wallet", "com.google.android.apps.walletnfcrel", 0),
+            new AppInfo("Gmail", "com.google.android.gm", 0),
+            new AppInfo("POS Terminal", "com.acme.pos", 0),
+            new AppInfo("Scanner", "com.acme.wallet.scanner", 0),
+            new AppInfo("Wallpapers", "com.example.walls", 0)));
+
+    @Test
+    public void initials_matchWordStarts() {
+        assertEquals(Arrays.asList("Google Wallet"), names(INDEX.search("gw", () -> false)));
+    }
+
+    @Test
+    public void ranking_prefersNamePrefixOverWordPrefix() {
+        assertEquals(Arrays.asList("Wallpapers", "Google Wallet", "Scanner"), names(INDEX.search("wall", () -> false)));
+    }
+
+    @Test
+    public void accents_areFoldedOnBothSides() {
+        assertEquals(Arrays.asList("Caf\u00e9 Finder"), names(INDEX.search("cafe", () -> false)));
+        assertEquals(Arrays.asList("Caf\u00e9 Finder"), names(INDEX.search("CAF\u00c9", () -> false)));
+    }
+
+    @Test
+    public void packageNames_areSearchedAfterLabels() {
+        assertEquals(Arrays.asList("Google Wallet", "Scanner"), names(INDEX.search("wallet", () -> false)));
+        assertEquals(Arrays.asList("POS Terminal", "Scanner"), names(INDEX.search("acme", () -> false)));
+    }
+
+    @Test
+    public void multipleTokens_mustEachStartAWord() {
+        assertEquals(Arrays.asList("Google Wallet"), names(INDEX.search("goo wal", () -> false)));
+        assertEquals(0, INDEX.search("goo mail", () -> false).size());
+    }
+
+    @Test
+    public void cancelledQuery_returnsNull() {
+        assertNull(INDEX.search("a", () -> true));
+    }
+
+    private static List<AppInfo> sorted(AppInfo... apps) {
+        List<AppInfo> list = new ArrayList<>(Arrays.asList(apps));
+        list.sort(AppInfo.BY_NAME);
+        return list;
+    }
+
+    private static List<String> names(List<AppInfo> apps) {
+        List<String> names = new ArrayList<>();
+        for (AppInfo app : apps) {
+            names.add(app.getAppName());
+        }
+        return names;
+    }
+}
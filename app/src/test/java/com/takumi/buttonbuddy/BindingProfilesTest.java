@@ -0,0 +1,66 @@
+package com.takumi.buttonbuddy;
+
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_DOUBLE_TAP;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_LONG_PRESS;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_DOWN;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_UP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class BindingProfilesTest {
+
+    private static final String POS = "com.example.pos";
+    private static final String SCANNER = "com.example.scanner";
+    private static final String WALLET = "com.example.wallet";
+
+    @Test
+    public void resolve_prefersForegroundRowAndFallsBackToDefault() {
+        BindingProfiles profiles = BindingProfiles.EMPTY
+                .with(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, WALLET)
+                .with(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, SCANNER)
+                .with(POS, KEYCODE_VOLUME_UP, GESTURE_DOUBLE_TAP, WALLET);
+
+        assertEquals(SCANNER, profiles.resolve(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+        assertEquals(WALLET, profiles.resolve("com.example.other", KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+        assertEquals(WALLET, profiles.resolve(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+        assertEquals(WALLET, profiles.resolve(POS, KEYCODE_VOLUME_UP, GESTURE_DOUBLE_TAP));
+        assertNull(profiles.resolve(null, KEYCODE_VOLUME_UP, GESTURE_DOUBLE_TAP));
+        assertNull(profiles.resolve(POS, 4, GESTURE_LONG_PRESS)); // Unbindable key
+        assertTrue(profiles.isBound(KEYCODE_VOLUME_UP, GESTURE_DOUBLE_TAP));
+        assertFalse(profiles.isBound(KEYCODE_VOLUME_UP, GESTURE_LONG_PRESS));
+        assertEquals(new HashSet<>(Arrays.asList(WALLET, SCANNER)), profiles.targets());
+    }
+
+    @Test
+    public void with_isCopyOnWriteAndDropsEmptyRows() {
+        BindingProfiles original = BindingProfiles.EMPTY.with(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, SCANNER);
+        BindingProfiles removed = original.with(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, null);
+
+        assertTrue(original.hasForegroundProfiles());
+        assertEquals(SCANNER, original.get(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+        assertFalse(removed.hasForegroundProfiles());
+        assertFalse(BindingProfiles.EMPTY.hasForegroundProfiles());
+        assertFalse(original.withoutForegroundProfiles().hasForegroundProfiles());
+    }
+
+    @Test
+    public void encodeThenDecode_roundTrips() {
+        BindingProfiles profiles = BindingProfiles.EMPTY
+                .with(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, WALLET)
+                .with(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, SCANNER);
+
+        BindingProfiles decoded = BindingProfiles.decode(profiles.encode() + "garbage line\n\t1\t2\t3\n");
+
+        assertEquals(WALLET, decoded.get(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+        assertEquals(SCANNER, decoded.get(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+        assertEquals(profiles.targets(), decoded.targets());
+        assertEquals(profiles.foregroundPackages(), decoded.foregroundPackages());
+    }
+}
@@ -0,0 +1,134 @@
+package com.takumi.buttonbuddy;
+
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_DOUBLE_TAP;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_LONG_PRESS;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_DOWN;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_UP;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class ConfigStoreTest {
+
+    private static final String POS = "com.example.pos";
+    private static final String WALLET = "com.example.wallet";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeThenRead_roundTripsEveryRow() throws IOException {
+        File file = new File(folder.getRoot(), "bindings.cfg");
+        BindingProfiles profiles = BindingProfiles.EMPTY
+                .with(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, WALLET)
+                .with(POS, KEYCODE_VOLUME_UP, GESTURE_DOUBLE_TAP, "uri:https://example.com/pay");
+
+        ConfigStore.write(file, profiles);
+        BindingProfiles read = ConfigStore.read(file);
+
+        assertNotNull(read);
+        assertEquals(profiles.encode(), read.encode());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void read_rejectsMissingCorruptAndNewerFiles() throws IOException {
+        File file = new File(folder.getRoot(), "bindings.cfg");
+        assertNull(ConfigStore.read(file));
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{0x42, 0x42, 0x43, 0x46, 0, 0, 0, 1, 0, 0});
+        }
+        assertNull(ConfigStore.read(file)); // Truncated
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{0x42, 0x42, 0x43, 0x46, 0, 0, 0, 99, 0, 0, 0, 1});
+        }
+        assertNull(ConfigStore.read(file)); // Unknown version
+    }
+
+    @Test
+    public void load_keepsACorruptFileAndFallsBackInMemory() throws IOException {
+        assertUnreadableFileSurvives(new byte[]{0x42, 0x42, 0x43, 0x46, 0, 0, 0, 1, 0, 0});
+    }
+
+    @Test
+    public void load_keepsAFileFromANewerVersion() throws IOException {
+        assertUnreadableFileSurvives(new byte[]{0x42, 0x42, 0x43, 0x46, 0, 0, 0, 99, 0, 0, 0, 1});
+    }
+
+    // Loading must neither migrate over the file nor clear the legacy copy; the first edit moves it aside
+    private void assertUnreadableFileSurvives(byte[] contents) throws IOException {
+        File file = new File(folder.getRoot(), "bindings.cfg");
+        Files.write(file.toPath(), contents);
+        boolean[] cleared = new boolean[1];
+        ConfigStore.LegacySource legacy = new ConfigStore.LegacySource() {
+            @Override
+            public BindingProfiles load() {
+                return BindingProfiles.EMPTY.with(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, WALLET);
+            }
+
+            @Override
+            public void clear() {
+                cleared[0] = true;
+            }
+        };
+        ConfigStore store = new ConfigStore(file, Runnable::run);
+
+        BindingProfiles fallback = store.load(legacy);
+        assertEquals(WALLET, fallback.get(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+        assertTrue(store.isFallback());
+        assertFalse(cleared[0]);
+        assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+
+        store.update(p -> p.with(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, WALLET));
+        assertFalse(store.isFallback());
+        assertArrayEquals(contents, Files.readAllBytes(new File(file.getPath() + ".bad").toPath()));
+        assertEquals(WALLET, ConfigStore.read(file).get(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+    }
+
+    @Test
+    public void load_migratesLegacyOnceThenEditsPersist() {
+        File file = new File(folder.getRoot(), "bindings.cfg");
+        boolean[] cleared = new boolean[1];
+        ConfigStore.LegacySource legacy = new ConfigStore.LegacySource() {
+            @Override
+            public BindingProfiles load() {
+                return BindingProfiles.EMPTY.with(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, WALLET);
+            }
+
+            @Override
+            public void clear() {
+                cleared[0] = true;
+            }
+        };
+        ConfigStore store = new ConfigStore(file, Runnable::run);
+
+        BindingProfiles migrated = store.load(legacy);
+        assertTrue(cleared[0]);
+        assertEquals(WALLET, migrated.get(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+
+        BindingProfiles edited = store.update(p -> p.with(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, WALLET));
+        assertSame(edited, store.get());
+        assertEquals(WALLET, migrated.get(null, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS)); // Old snapshot untouched
+        assertNull(migrated.get(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+
+        cleared[0] = false;
+        BindingProfiles reloaded = new ConfigStore(file, Runnable::run).load(legacy);
+        assertFalse(cleared[0]); // Came from the file this time
+        assertEquals(WALLET, reloaded.get(POS, KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS));
+    }
+}
@@ -0,0 +1,68 @@
+package com.takumi.buttonbuddy;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageInfo;
+import android.os.Process;
+import android.os.UserHandle;
+
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.util.Locale;
+
+/**
+ * Fills Robolectric's in-memory PackageManager and LauncherApps with thousands of launchable
+ * apps, so the picker's loader sees a large device without one. Labels are set directly on the
+ * ApplicationInfo, so loading them costs no PackageManager call, like a cached label on a device.
+ */
+final class FakeAppCatalog {
+
+    private FakeAppCatalog() {
+    }
+
+    static void install(Context context, int count) {
+        UserHandle user = Process.myUserHandle();
+        LauncherApps launcherApps = context.getSystemService(LauncherApps.class);
+        for (int i = 0; i < count; i++) {
+            String packageName = String.format(Locale.ROOT, "com.example.app%05d", i);
+            ApplicationInfo appInfo = new ApplicationInfo();
+            appInfo.packageName = packageName;
+            appInfo.nonLocalizedLabel = "App " + i;
+            PackageInfo packageInfo = new PackageInfo();
+            packageInfo.packageName = packageName;
+            packageInfo.applicationInfo = appInfo;
+            packageInfo.lastUpdateTime = 1000L + i;
+            shadowOf(context.getPackageManager()).installPackage(packageInfo);
+
+            ActivityInfo activityInfo = new ActivityInfo();
+            activityInfo.packageName = packageName;
+            activityInfo.name = packageName + ".MainActivity";
+            activityInfo.applicationInfo = appInfo;
+            shadowOf(launcherApps).addActivity(user, launcherActivityInfo(context, activityInfo, user));
+        }
+    }
+
+    // LauncherActivityInfo has no public constructor; this is the SDK 36 one (hence @Config(sdk = 36))
+    private static LauncherActivityInfo launcherActivityInfo(Context context, ActivityInfo activityInfo, UserHandle user) {
+        try {
+            Class<?> internalClass = Class.forName("android.content.pm.LauncherActivityInfoInternal");
+            Class<?> incrementalStatesClass = Class.forName("android.content.pm.IncrementalStatesInfo");
+            Object internal = ReflectionHelpers.callConstructor(internalClass,
+                    ClassParameter.from(ActivityInfo.class, activityInfo),
+                    ClassParameter.from(incrementalStatesClass, null),
+                    ClassParameter.from(UserHandle.class, user),
+                    ClassParameter.from(boolean.class, false));
+            return ReflectionHelpers.callConstructor(LauncherActivityInfo.class,
+                    ClassParameter.from(Context.class, context),
+                    ClassParameter.from(internalClass, internal));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.takumi.buttonbuddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class ForegroundAppTrackerTest {
+
+    @Test
+    public void burstsCollapseAndOverlaysAreIgnored() {
+        ForegroundAppTracker tracker = new ForegroundAppTracker();
+        tracker.setIgnoredPackages(Collections.singleton("com.example.keyboard"));
+
+        tracker.onWindowStateChanged("com.example.pos");
+        tracker.onWindowStateChanged(new StringBuilder("com.example.pos")); // Same app, other instance
+        tracker.onWindowStateChanged(ForegroundAppTracker.SYSTEM_UI_PACKAGE); // Volume panel
+        tracker.onWindowStateChanged("com.example.keyboard");
+        tracker.onWindowStateChanged(null);
+
+        assertEquals("com.example.pos", tracker.getForegroundPackage());
+        assertTrue(tracker.describe().contains("1 changes from 5 window events"));
+
+        tracker.onWindowStateChanged("com.example.browser");
+        assertEquals("com.example.browser", tracker.getForegroundPackage());
+
+        tracker.clear();
+        assertNull(tracker.getForegroundPackage());
+    }
+}
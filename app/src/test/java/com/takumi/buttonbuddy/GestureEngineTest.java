@@ -0,0 +1,211 @@
+package com.takumi.buttonbuddy;
+
+import static com.takumi.buttonbuddy.GestureEngine.ACTION_DOWN;
+import static com.takumi.buttonbuddy.GestureEngine.ACTION_UP;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_CHORD;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_DOUBLE_TAP;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_HOLD_RELEASE;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_LONG_PRESS;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_TRIPLE_TAP;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_DOWN;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_UP;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GestureEngineTest {
+
+    private static final int KEYCODE_BACK = 4;
+
+    private long now;
+    private final List<String> gestures = new ArrayList<>();
+    private GestureEngine engine;
+
+    @Before
+    public void setUp() {
+        now = 10_000;
+        gestures.clear();
+        engine = new GestureEngine(() -> now, (gesture, keyCode, eventTime) ->
+                gestures.add(gesture + "/" + keyCode + "@" + eventTime));
+    }
+
+    @Test
+    public void longPress_firesOnceAtThreshold() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, true);
+
+        key(KEYCODE_VOLUME_DOWN, ACTION_DOWN);
+        assertEquals(now + 1000, engine.nextDeadline());
+        advanceTo(now + 999);
+        assertEquals(0, gestures.size());
+
+        advanceTo(now + 1);
+        // Auto-repeats while held must not re-arm the timer
+        engine.onKeyEvent(KEYCODE_VOLUME_DOWN, ACTION_DOWN, 5, now);
+        advanceTo(now + 2000);
+        key(KEYCODE_VOLUME_DOWN, ACTION_UP);
+
+        assertEquals(1, gestures.size());
+        assertEquals(GESTURE_LONG_PRESS + "/" + KEYCODE_VOLUME_DOWN + "@11000", gestures.get(0));
+        assertEquals(GestureEngine.NO_DEADLINE, engine.nextDeadline());
+    }
+
+    @Test
+    public void longPress_cancelledByEarlyReleaseOrOtherKey() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, true);
+
+        key(KEYCODE_VOLUME_DOWN, ACTION_DOWN);
+        now += 500;
+        key(KEYCODE_VOLUME_DOWN, ACTION_UP);
+        advanceTo(now + 2000);
+
+        key(KEYCODE_VOLUME_DOWN, ACTION_DOWN);
+        now += 200;
+        key(KEYCODE_BACK, ACTION_DOWN);
+        advanceTo(now + 2000);
+
+        assertEquals(0, gestures.size());
+    }
+
+    @Test
+    public void isIdle_untilEveryKeyIsUpAndNoTimerIsPending() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_DOUBLE_TAP, true);
+        assertEquals(true, engine.isIdle());
+
+        key(KEYCODE_VOLUME_DOWN, ACTION_DOWN);
+        assertEquals(false, engine.isIdle());
+        now += 100;
+        key(KEYCODE_VOLUME_DOWN, ACTION_UP);
+        assertEquals(false, engine.isIdle()); // Waiting for a second tap
+        advanceTo(now + 1000);
+
+        assertEquals(true, engine.isIdle());
+    }
+
+    @Test
+    public void holdRelease_firesOnReleaseAfterThreshold() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_UP, GESTURE_HOLD_RELEASE, true);
+        engine.setTiming(GESTURE_HOLD_RELEASE, 600);
+
+        key(KEYCODE_VOLUME_UP, ACTION_DOWN);
+        now += 400;
+        key(KEYCODE_VOLUME_UP, ACTION_UP);
+        assertEquals(0, gestures.size());
+
+        key(KEYCODE_VOLUME_UP, ACTION_DOWN);
+        now += 700;
+        key(KEYCODE_VOLUME_UP, ACTION_UP);
+        assertEquals(1, gestures.size());
+        assertEquals(GESTURE_HOLD_RELEASE + "/" + KEYCODE_VOLUME_UP + "@" + now, gestures.get(0));
+    }
+
+    @Test
+    public void doubleTap_firesAfterTripleTapWindowExpires() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_DOUBLE_TAP, true);
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_TRIPLE_TAP, true);
+
+        tap(KEYCODE_VOLUME_DOWN);
+        now += 100;
+        tap(KEYCODE_VOLUME_DOWN);
+        assertEquals(0, gestures.size()); // Still waiting for a possible third tap
+
+        advanceTo(now + 300);
+        assertEquals(1, gestures.size());
+        assertEquals(GESTURE_DOUBLE_TAP + "/" + KEYCODE_VOLUME_DOWN + "@" + now, gestures.get(0));
+    }
+
+    @Test
+    public void doubleTap_firesImmediatelyWhenTripleTapDisabled() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_DOUBLE_TAP, true);
+
+        tap(KEYCODE_VOLUME_DOWN);
+        now += 100;
+        tap(KEYCODE_VOLUME_DOWN);
+
+        assertEquals(1, gestures.size());
+        assertEquals(GestureEngine.NO_DEADLINE, engine.nextDeadline());
+    }
+
+    @Test
+    public void tripleTap_firesOnThirdTap() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_DOUBLE_TAP, true);
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_TRIPLE_TAP, true);
+
+        tap(KEYCODE_VOLUME_DOWN);
+        now += 100;
+        tap(KEYCODE_VOLUME_DOWN);
+        now += 100;
+        tap(KEYCODE_VOLUME_DOWN);
+        advanceTo(now + 1000);
+
+        assertEquals(1, gestures.size());
+        assertEquals(GESTURE_TRIPLE_TAP + "/" + KEYCODE_VOLUME_DOWN + "@" + (now - 1000), gestures.get(0));
+    }
+
+    @Test
+    public void taps_tooFarApartAreNotMultiTap() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_DOUBLE_TAP, true);
+
+        tap(KEYCODE_VOLUME_DOWN);
+        now += 500;
+        tap(KEYCODE_VOLUME_DOWN);
+        advanceTo(now + 1000);
+
+        assertEquals(0, gestures.size());
+    }
+
+    @Test
+    public void chord_consumesBothKeys() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, true);
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_CHORD, true);
+        engine.setGestureEnabled(KEYCODE_VOLUME_UP, GESTURE_CHORD, true);
+
+        key(KEYCODE_VOLUME_DOWN, ACTION_DOWN);
+        now += 50;
+        key(KEYCODE_VOLUME_UP, ACTION_DOWN);
+        advanceTo(now + 2000);
+        key(KEYCODE_VOLUME_UP, ACTION_UP);
+        key(KEYCODE_VOLUME_DOWN, ACTION_UP);
+
+        assertEquals(1, gestures.size());
+        assertEquals(GESTURE_CHORD + "/" + KEYCODE_VOLUME_UP + "@10050", gestures.get(0));
+    }
+
+    @Test
+    public void chord_outsideWindowIsTwoPresses() {
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, true);
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_CHORD, true);
+        engine.setGestureEnabled(KEYCODE_VOLUME_UP, GESTURE_CHORD, true);
+
+        key(KEYCODE_VOLUME_DOWN, ACTION_DOWN);
+        now += 400;
+        key(KEYCODE_VOLUME_UP, ACTION_DOWN);
+        advanceTo(now + 1000);
+
+        assertEquals(1, gestures.size());
+        assertEquals(GESTURE_LONG_PRESS + "/" + KEYCODE_VOLUME_DOWN + "@11000", gestures.get(0));
+    }
+
+    private void tap(int keyCode) {
+        key(keyCode, ACTION_DOWN);
+        now += 50;
+        key(keyCode, ACTION_UP);
+    }
+
+    private void key(int keyCode, int action) {
+        engine.onKeyEvent(keyCode, action, 0, now);
+    }
+
+    // Behaves like the service's handler: fires every deadline up to the target time in order
+    private void advanceTo(long target) {
+        long deadline;
+        while ((deadline = engine.nextDeadline()) <= target) {
+            now = deadline;
+            engine.onTimer();
+        }
+        now = target;
+    }
+}
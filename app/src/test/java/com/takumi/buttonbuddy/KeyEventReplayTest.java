@@ -0,0 +1,131 @@
+package com.takumi.buttonbuddy;
+
+import static com.takumi.buttonbuddy.GestureEngine.ACTION_DOWN;
+import static com.takumi.buttonbuddy.GestureEngine.ACTION_UP;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_LONG_PRESS;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_DOWN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays synthetic streams, and any recorded traces in the directory named by the
+ * {@code buttonbuddy.traces} system property ({@code ./gradlew test -Ptraces=<dir>}), through
+ * the gesture engine on a virtual clock.
+ */
+public class KeyEventReplayTest {
+
+    private static final int KEYCODE_A = 29;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final KeyEventReplayer replayer = new KeyEventReplayer(KeyEventReplayer.DEFAULT_TOLERANCE_MILLIS);
+
+    @Test
+    public void syntheticStreams_recognizeExactlyTheExpectedGestures() {
+        KeyEventTrace[] streams = {
+                SyntheticKeyStreams.autoRepeatStorm(1, 500, SyntheticKeyStreams.KEY_REPEAT_DELAY_MILLIS),
+                SyntheticKeyStreams.autoRepeatStorm(2, 200, 5), // Far faster than any real keyboard
+                SyntheticKeyStreams.rapidTaps(3, 500),
+                SyntheticKeyStreams.interleavedKeys(4, 500),
+                SyntheticKeyStreams.mixed(5, 5000),
+        };
+        for (KeyEventTrace stream : streams) {
+            KeyEventReplayer.Report report = replayer.replay(stream);
+            assertTrue(report.toString(), report.expected > 0);
+            assertEquals(report.toString(), 0, report.falsePositives);
+            assertEquals(report.toString(), 0, report.falseNegatives);
+        }
+    }
+
+    @Test
+    public void timingChange_showsUpAsFalseNegatives() {
+        KeyEventTrace stream = SyntheticKeyStreams.autoRepeatStorm(6, 400, SyntheticKeyStreams.KEY_REPEAT_DELAY_MILLIS);
+        int longHolds = stream.gestureCount();
+
+        // Every long hold in the stream is released before 3 s
+        KeyEventReplayer.Report report = replayer.replay(stream, engine -> engine.setTiming(GESTURE_LONG_PRESS, 3000));
+
+        assertEquals(report.toString(), longHolds, report.falseNegatives);
+        assertEquals(report.toString(), 0, report.falsePositives);
+    }
+
+    @Test
+    public void trace_roundTripsAndDropsOtherKeyCodes() throws IOException {
+        KeyEventTrace trace = SyntheticKeyStreams.newTrace();
+        trace.addEvent(KEYCODE_A, ACTION_DOWN, 0, 10);
+        trace.addEvent(KEYCODE_VOLUME_DOWN, ACTION_DOWN, 300, 20);
+        trace.addGesture(GESTURE_LONG_PRESS, KEYCODE_VOLUME_DOWN, 1010);
+        File file = folder.newFile("keys.bbkt");
+
+        trace.write(file);
+        KeyEventTrace read = KeyEventTrace.read(file);
+
+        assertEquals(2, read.eventCount());
+        assertEquals(KeyEventTrace.KEYCODE_OTHER, read.keyCode(0));
+        assertEquals(KEYCODE_VOLUME_DOWN, read.keyCode(1));
+        assertEquals(0x7F, read.repeatCount(1)); // Clamped like the service's message packing
+        assertEquals(20, read.eventTime(1));
+        assertEquals(1, read.gestureCount());
+        assertEquals(1010, read.gestureTime(0));
+    }
+
+    @Test
+    public void trace_keepsAutoRepeatsAndOtherKeysThroughRecordAndReplay() throws IOException {
+        KeyEventTrace trace = SyntheticKeyStreams.newTrace();
+        int repeats = 0;
+        // A long volume-down hold, an idle hold of another key, then a short volume-down hold
+        repeats += hold(trace, KEYCODE_VOLUME_DOWN, 0, 1600);
+        trace.addGesture(GESTURE_LONG_PRESS, KEYCODE_VOLUME_DOWN, 1000);
+        repeats += hold(trace, KEYCODE_A, 3000, 1200);
+        repeats += hold(trace, KEYCODE_VOLUME_DOWN, 6000, 700);
+        File file = folder.newFile("repeats.bbkt");
+
+        trace.write(file);
+        KeyEventTrace read = KeyEventTrace.read(file);
+
+        int readRepeats = 0;
+        for (int i = 0; i < read.eventCount(); i++) {
+            if (read.repeatCount(i) != 0) {
+                readRepeats++;
+            }
+        }
+        assertEquals(repeats, readRepeats);
+        assertEquals(trace.eventCount(), read.eventCount());
+        KeyEventReplayer.Report report = replayer.replay(read);
+        assertEquals(report.toString(), 1, report.expected);
+        assertEquals(report.toString(), 0, report.falsePositives + report.falseNegatives);
+    }
+
+    // Down, auto-repeats after the initial delay, up; returns the number of repeats added
+    private static int hold(KeyEventTrace trace, int keyCode, long start, long duration) {
+        trace.addEvent(keyCode, ACTION_DOWN, 0, start);
+        int repeat = 0;
+        for (long t = start + SyntheticKeyStreams.KEY_REPEAT_TIMEOUT_MILLIS; t < start + duration;
+                t += SyntheticKeyStreams.KEY_REPEAT_DELAY_MILLIS) {
+            trace.addEvent(keyCode, ACTION_DOWN, ++repeat, t);
+        }
+        trace.addEvent(keyCode, ACTION_UP, 0, start + duration);
+        return repeat;
+    }
+
+    @Test
+    public void recordedTraces_replayTheGesturesRecognizedLive() throws IOException {
+        String dir = System.getProperty("buttonbuddy.traces", "");
+        Assume.assumeTrue("No recorded traces configured", !dir.isEmpty());
+        File[] files = new File(dir).listFiles((d, name) -> name.endsWith(".bbkt"));
+        Assume.assumeTrue("No traces in " + dir, files != null && files.length > 0);
+        for (File file : files) {
+            KeyEventReplayer.Report report = replayer.replay(KeyEventTrace.read(file));
+            assertEquals(file.getName() + ": " + report, 0, report.falsePositives + report.falseNegatives);
+        }
+    }
+}
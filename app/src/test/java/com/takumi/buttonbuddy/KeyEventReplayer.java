@@ -0,0 +1,130 @@
+package com.takumi.buttonbuddy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Plays a {@link KeyEventTrace} through a {@link GestureEngine} on a virtual clock, the way the
+ * service's gesture thread drives it: the timer fires exactly at each deadline and every event
+ * is delivered at its own time. Nothing sleeps, so hours of input replay in milliseconds.
+ * Recognized gestures are matched against the trace's expected ones within a tolerance.
+ */
+final class KeyEventReplayer {
+
+    static final long DEFAULT_TOLERANCE_MILLIS = 50;
+
+    static final class Report {
+        int events;
+        int recognized;
+        int expected;
+        int truePositives;
+        int falsePositives; // Recognized, but not expected
+        int falseNegatives; // Expected, but not recognized
+        long totalNanos;
+        long maxNanos;
+        final List<String> mismatches = new ArrayList<>(); // First few, for failure messages
+
+        double nanosPerEvent() {
+            return events == 0 ? 0 : (double) totalNanos / events;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d events, %d gestures recognized / %d expected: "
+                            + "%d ok, %d false positives, %d false negatives; %.0f ns/event, max %d ns%s",
+                    events, recognized, expected, truePositives, falsePositives, falseNegatives,
+                    nanosPerEvent(), maxNanos, mismatches.isEmpty() ? "" : "\n  " + String.join("\n  ", mismatches));
+        }
+    }
+
+    /** Changes the engine after the trace's own configuration is applied, e.g. a new timing. */
+    interface Tweak {
+        void apply(GestureEngine engine);
+    }
+
+    private final long toleranceMillis;
+
+    KeyEventReplayer(long toleranceMillis) {
+        this.toleranceMillis = toleranceMillis;
+    }
+
+    Report replay(KeyEventTrace trace) {
+        return replay(trace, engine -> { });
+    }
+
+    Report replay(KeyEventTrace trace, Tweak tweak) {
+        long[] now = {0};
+        KeyEventTrace recognized = new KeyEventTrace();
+        GestureEngine engine = new GestureEngine(() -> now[0], recognized::addGesture);
+        trace.configure(engine);
+        tweak.apply(engine);
+
+        Report report = new Report();
+        for (int i = 0; i < trace.eventCount(); i++) {
+            long eventTime = trace.eventTime(i);
+            long start = System.nanoTime();
+            fireTimersUntil(engine, now, eventTime);
+            now[0] = eventTime;
+            engine.onKeyEvent(trace.keyCode(i), trace.action(i), trace.repeatCount(i), eventTime);
+            long cost = System.nanoTime() - start;
+            report.totalNanos += cost;
+            report.maxNanos = Math.max(report.maxNanos, cost);
+        }
+        fireTimersUntil(engine, now, Long.MAX_VALUE);
+        report.events = trace.eventCount();
+        match(trace, recognized, report);
+        return report;
+    }
+
+    private static void fireTimersUntil(GestureEngine engine, long[] now, long time) {
+        long deadline;
+        while ((deadline = engine.nextDeadline()) != GestureEngine.NO_DEADLINE && deadline <= time) {
+            now[0] = deadline;
+            engine.onTimer();
+        }
+    }
+
+    // Both lists are in time order; each expected gesture takes the first unused recognized one
+    // of the same kind within the tolerance
+    private void match(KeyEventTrace expected, KeyEventTrace recognized, Report report) {
+        report.expected = expected.gestureCount();
+        report.recognized = recognized.gestureCount();
+        boolean[] used = new boolean[recognized.gestureCount()];
+        int low = 0;
+        for (int i = 0; i < expected.gestureCount(); i++) {
+            long time = expected.gestureTime(i);
+            while (low < used.length && recognized.gestureTime(low) < time - toleranceMillis) {
+                low++;
+            }
+            int found = -1;
+            for (int j = low; j < used.length && recognized.gestureTime(j) <= time + toleranceMillis; j++) {
+                if (!used[j] && recognized.gesture(j) == expected.gesture(i)
+                        && recognized.gestureKeyCode(j) == expected.gestureKeyCode(i)) {
+                    found = j;
+                    break;
+                }
+            }
+            if (found >= 0) {
+                used[found] = true;
+                report.truePositives++;
+            } else {
+                report.falseNegatives++;
+                note(report, "missed gesture " + expected.gesture(i) + " on key " + expected.gestureKeyCode(i) + " @" + time);
+            }
+        }
+        for (int j = 0; j < used.length; j++) {
+            if (!used[j]) {
+                report.falsePositives++;
+                note(report, "unexpected gesture " + recognized.gesture(j) + " on key "
+                        + recognized.gestureKeyCode(j) + " @" + recognized.gestureTime(j));
+            }
+        }
+    }
+
+    private static void note(Report report, String mismatch) {
+        if (report.mismatches.size() < 10) {
+            report.mismatches.add(mismatch);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.takumi.buttonbuddy;
+
+import static com.takumi.buttonbuddy.MetricsRecorder.COUNTER_GESTURES;
+import static com.takumi.buttonbuddy.MetricsRecorder.COUNTER_KEY_EVENTS;
+import static com.takumi.buttonbuddy.MetricsRecorder.HISTOGRAM_EVENT_HANDLING;
+import static com.takumi.buttonbuddy.MetricsRecorder.HISTOGRAM_TIMER_DRIFT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MetricsRecorderTest {
+
+    @Test
+    public void disabled_recordsNothingAndSkipsTheClock() {
+        MetricsRecorder metrics = new MetricsRecorder();
+
+        metrics.increment(COUNTER_KEY_EVENTS);
+        metrics.recordMicros(HISTOGRAM_EVENT_HANDLING, 50);
+        long start = metrics.startNanos();
+        metrics.recordSince(HISTOGRAM_EVENT_HANDLING, start);
+
+        assertEquals(MetricsRecorder.NOT_TIMED, start);
+        assertEquals(0, metrics.count(COUNTER_KEY_EVENTS));
+        assertEquals(0, metrics.histogramCount(HISTOGRAM_EVENT_HANDLING));
+    }
+
+    @Test
+    public void enabled_countsAndBucketsByPowerOfTwo() {
+        MetricsRecorder metrics = new MetricsRecorder();
+        metrics.setEnabled(true);
+
+        metrics.increment(COUNTER_KEY_EVENTS);
+        metrics.increment(COUNTER_KEY_EVENTS);
+        metrics.increment(COUNTER_GESTURES);
+        for (int i = 0; i < 98; i++) {
+            metrics.recordMicros(HISTOGRAM_TIMER_DRIFT, 100); // Bucket [64, 127]
+        }
+        metrics.recordMicros(HISTOGRAM_TIMER_DRIFT, 5000);
+        metrics.recordMicros(HISTOGRAM_TIMER_DRIFT, -3); // Early fire, clamped to 0
+
+        assertEquals(2, metrics.count(COUNTER_KEY_EVENTS));
+        assertEquals(1, metrics.count(COUNTER_GESTURES));
+        assertEquals(100, metrics.histogramCount(HISTOGRAM_TIMER_DRIFT));
+        assertEquals(127, metrics.percentileMicros(HISTOGRAM_TIMER_DRIFT, 50));
+        assertEquals(127, metrics.percentileMicros(HISTOGRAM_TIMER_DRIFT, 99));
+        assertEquals(5000, metrics.percentileMicros(HISTOGRAM_TIMER_DRIFT, 100));
+        assertEquals(5000, metrics.maxMicros(HISTOGRAM_TIMER_DRIFT));
+        assertTrue(metrics.describe().contains("timer drift: 100 samples"));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        MetricsRecorder metrics = new MetricsRecorder();
+        metrics.setEnabled(true);
+        metrics.increment(COUNTER_KEY_EVENTS);
+        metrics.recordMicros(HISTOGRAM_EVENT_HANDLING, 10);
+
+        metrics.reset();
+
+        assertEquals(0, metrics.count(COUNTER_KEY_EVENTS));
+        assertEquals(0, metrics.histogramCount(HISTOGRAM_EVENT_HANDLING));
+        assertEquals(0, metrics.maxMicros(HISTOGRAM_EVENT_HANDLING));
+        assertTrue(metrics.describe().contains("gesture thread handling: no samples"));
+        assertTrue(metrics.describe().contains("onKeyEvent: no samples"));
+    }
+}
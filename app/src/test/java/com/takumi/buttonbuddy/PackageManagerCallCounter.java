@@ -0,0 +1,154 @@
+package com.takumi.buttonbuddy;
+
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.os.Looper;
+import android.os.UserHandle;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowApplicationPackageManager;
+import org.robolectric.shadows.ShadowLauncherApps;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Robolectric shadows that count the PackageManager and LauncherApps calls ButtonBuddy makes;
+ * on a device each one is a binder call into system_server. Install them with
+ * {@code @Config(shadows = {CountingPackageManager.class, CountingLauncherApps.class})}.
+ * Calls may come from any thread; those on the main thread are also counted on their own.
+ */
+public final class PackageManagerCallCounter {
+
+    private static final AtomicInteger calls = new AtomicInteger();
+    private static final AtomicInteger mainThreadCalls = new AtomicInteger();
+
+    private PackageManagerCallCounter() {
+    }
+
+    static int count() {
+        return calls.get();
+    }
+
+    static int mainThreadCount() {
+        return mainThreadCalls.get();
+    }
+
+    static void reset() {
+        calls.set(0);
+        mainThreadCalls.set(0);
+    }
+
+    private static void onCall() {
+        calls.incrementAndGet();
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mainThreadCalls.incrementAndGet();
+        }
+    }
+
+    @Implements(className = "android.app.ApplicationPackageManager", isInAndroidSdk = false)
+    public static class CountingPackageManager extends ShadowApplicationPackageManager {
+
+        @Implementation
+        @Override
+        public List<PackageInfo> getInstalledPackages(int flags) {
+            onCall();
+            return super.getInstalledPackages(flags);
+        }
+
+        @Implementation
+        @Override
+        protected List<PackageInfo> getInstalledPackages(Object flags) {
+            onCall();
+            return super.getInstalledPackages(flags);
+        }
+
+        @Implementation
+        @Override
+        protected Object getChangedPackages(int sequenceNumber) {
+            onCall();
+            return super.getChangedPackages(sequenceNumber);
+        }
+
+        @Implementation
+        @Override
+        protected PackageInfo getPackageInfo(String packageName, int flags) throws PackageManager.NameNotFoundException {
+            onCall();
+            return super.getPackageInfo(packageName, flags);
+        }
+
+        @Implementation
+        @Override
+        protected PackageInfo getPackageInfo(String packageName, Object flags) throws PackageManager.NameNotFoundException {
+            onCall();
+            return super.getPackageInfo(packageName, flags);
+        }
+
+        @Implementation
+        @Override
+        protected ApplicationInfo getApplicationInfo(String packageName, int flags) throws PackageManager.NameNotFoundException {
+            onCall();
+            return super.getApplicationInfo(packageName, flags);
+        }
+
+        @Implementation
+        @Override
+        protected ApplicationInfo getApplicationInfo(String packageName, Object flags) throws PackageManager.NameNotFoundException {
+            onCall();
+            return super.getApplicationInfo(packageName, flags);
+        }
+
+        @Implementation
+        @Override
+        protected Drawable getApplicationIcon(String packageName) throws PackageManager.NameNotFoundException {
+            onCall();
+            return super.getApplicationIcon(packageName);
+        }
+
+        @Implementation
+        @Override
+        protected Drawable getApplicationIcon(ApplicationInfo info) throws PackageManager.NameNotFoundException {
+            onCall();
+            return super.getApplicationIcon(info);
+        }
+
+        @Implementation
+        @Override
+        protected Intent getLaunchIntentForPackage(String packageName) {
+            onCall();
+            return super.getLaunchIntentForPackage(packageName);
+        }
+
+        @Implementation
+        @Override
+        protected CharSequence getText(String packageName, int resid, ApplicationInfo appInfo) {
+            onCall();
+            return super.getText(packageName, resid, appInfo);
+        }
+    }
+
+    @Implements(LauncherApps.class)
+    public static class CountingLauncherApps extends ShadowLauncherApps {
+
+        @Implementation
+        @Override
+        protected List<LauncherActivityInfo> getActivityList(String packageName, UserHandle user) {
+            onCall();
+            return super.getActivityList(packageName, user);
+        }
+
+        @Implementation
+        @Override
+        protected ApplicationInfo getApplicationInfo(String packageName, int flags, UserHandle user)
+                throws PackageManager.NameNotFoundException {
+            onCall();
+            return super.getApplicationInfo(packageName, flags, user);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.takumi.buttonbuddy;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.view.KeyEvent;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.function.IntConsumer;
+
+/**
+ * Performance budgets that fail the build instead of shipping a regression: PackageManager calls
+ * on the main thread while the screens open, PackageManager calls per picker open, allocations
+ * on the key path and gesture thread posts per press. Only counts are budgeted, never JVM
+ * wall-clock time, which says nothing about devices and flakes on loaded machines; timings
+ * belong in the benchmark module. Runs against {@link FakeAppCatalog} with thousands of apps. A
+ * change that really needs more has to raise the budget here, in review.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 36, shadows = {PackageManagerCallCounter.CountingPackageManager.class,
+        PackageManagerCallCounter.CountingLauncherApps.class})
+public class PerformanceBudgetTest {
+
+    private static final int APP_COUNT = 3000;
+
+    // Each is a blocking binder call on a device; the screens do all of theirs in the background
+    private static final int MAIN_THREAD_PACKAGE_MANAGER_CALLS_PICKER_ON_CREATE = 0;
+    private static final int MAIN_THREAD_PACKAGE_MANAGER_CALLS_MAIN_ON_RESUME = 0;
+    // Bulk queries plus an icon per bound row; a call per installed app would be thousands
+    private static final int PACKAGE_MANAGER_CALLS_PER_PICKER_OPEN = 40;
+    // Bytes beyond what posting a pooled Message costs; less than the smallest Java object
+    private static final double EXTRA_BYTES_PER_KEY_EVENT = 8;
+    // Key down, key up and the single long-press timer
+    private static final long HANDLER_POSTS_PER_PRESS = 3;
+    private static final int REPEATS_PER_HOLD = 200; // Ten seconds of typical auto-repeat
+    private static final int UNBOUND_KEY_PRESSES = 50;
+
+    private static final int ALLOCATION_WARMUP_CALLS = 500;
+    private static final int ALLOCATION_MEASURED_CALLS = 1000;
+    private static final Duration FRAME = Duration.ofMillis(16);
+
+    private Context context;
+    private boolean metricsWereEnabled; // MetricsRecorder is process-wide; restored after each test
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        FakeAppCatalog.install(context, APP_COUNT);
+        PackageManagerCallCounter.reset();
+        metricsWereEnabled = MetricsRecorder.get().isEnabled();
+    }
+
+    @After
+    public void tearDown() {
+        MetricsRecorder metrics = MetricsRecorder.get();
+        metrics.reset();
+        metrics.setEnabled(metricsWereEnabled);
+    }
+
+    @Test
+    public void pickerOnCreate_makesNoPackageManagerCallsOnTheMainThread() {
+        ActivityController<AppPickerActivity> controller = Robolectric.buildActivity(AppPickerActivity.class);
+        controller.create();
+        int calls = PackageManagerCallCounter.mainThreadCount();
+        controller.destroy();
+        assertWithinBudget("Main-thread PackageManager calls in AppPickerActivity.onCreate", calls,
+                MAIN_THREAD_PACKAGE_MANAGER_CALLS_PICKER_ON_CREATE);
+    }
+
+    @Test
+    public void mainActivityOnResume_makesNoPackageManagerCallsOnTheMainThread() {
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).setup();
+        settle(); // The status snapshot every later resume renders
+        PackageManagerCallCounter.reset();
+        for (int i = 0; i < 3; i++) {
+            controller.pause();
+            controller.resume();
+        }
+        int calls = PackageManagerCallCounter.mainThreadCount();
+        controller.pause().stop().destroy();
+        assertWithinBudget("Main-thread PackageManager calls in three MainActivity.onResume", calls,
+                MAIN_THREAD_PACKAGE_MANAGER_CALLS_MAIN_ON_RESUME);
+    }
+
+    @Test
+    public void pickerOpen_staysWithinPackageManagerCallBudget() {
+        // The first open enumerates and writes the index, the second starts from it
+        for (String open : new String[] {"first", "second"}) {
+            PackageManagerCallCounter.reset();
+            ActivityController<AppPickerActivity> controller = Robolectric.buildActivity(AppPickerActivity.class).setup();
+            awaitCatalog(controller.get().findViewById(R.id.app_list_recycler_view));
+            settle(); // Icons of the bound rows
+            int calls = PackageManagerCallCounter.count();
+            controller.pause().stop().destroy();
+            assertWithinBudget("PackageManager calls, " + open + " picker open", calls, PACKAGE_MANAGER_CALLS_PER_PICKER_OPEN);
+        }
+    }
+
+    @Test
+    public void onKeyEvent_allocatesNothingBeyondThePooledMessage() throws InterruptedException {
+        ServiceController<ButtonBuddyAccessibilityService> controller =
+                Robolectric.buildService(ButtonBuddyAccessibilityService.class).create();
+        ButtonBuddyAccessibilityService service = controller.get();
+        long now = SystemClock.uptimeMillis();
+        KeyEvent[] events = {
+                new KeyEvent(now, now, KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_VOLUME_DOWN, 0),
+                new KeyEvent(now, now, KeyEvent.ACTION_UP, KeyEvent.KEYCODE_VOLUME_DOWN, 0),
+        };
+        HandlerThread baselineThread = new HandlerThread("AllocationBaseline");
+        baselineThread.start();
+        Handler baseline = new Handler(baselineThread.getLooper(), msg -> true);
+
+        // Robolectric's message queue does its own bookkeeping; only what onKeyEvent adds counts
+        double baselineBytes = bytesPerCall(i -> baseline.sendMessageAtTime(
+                Message.obtain(baseline, 1, i, 0), SystemClock.uptimeMillis()));
+        double keyEventBytes = bytesPerCall(i -> service.onKeyEvent(events[i & 1]));
+        baselineThread.quit();
+        controller.destroy();
+
+        assertWithinBudget("Bytes per onKeyEvent beyond a Message post", keyEventBytes - baselineBytes, EXTRA_BYTES_PER_KEY_EVENT);
+    }
+
+    @Test
+    public void pressCycle_staysWithinHandlerPostBudget() {
+        ServiceController<ButtonBuddyAccessibilityService> controller =
+                Robolectric.buildService(ButtonBuddyAccessibilityService.class).create();
+        ButtonBuddyAccessibilityService service = controller.get();
+        ShadowLooper gestureLooper = shadowOf(gestureLooper());
+        gestureLooper.idle(); // Applies the bindings posted at startup
+        MetricsRecorder metrics = MetricsRecorder.get();
+        metrics.setEnabled(true);
+        metrics.reset();
+
+        // A short press of volume down, whose long press is bound
+        long down = SystemClock.uptimeMillis();
+        service.onKeyEvent(new KeyEvent(down, down, KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_VOLUME_DOWN, 0));
+        gestureLooper.idle();
+        ShadowSystemClock.advanceBy(Duration.ofMillis(120));
+        service.onKeyEvent(new KeyEvent(down, SystemClock.uptimeMillis(), KeyEvent.ACTION_UP, KeyEvent.KEYCODE_VOLUME_DOWN, 0));
+        gestureLooper.idle();
+        long posts = metrics.count(MetricsRecorder.COUNTER_HANDLER_POSTS);
+        controller.destroy();
+
+        assertWithinBudget("Gesture thread posts per press", posts, HANDLER_POSTS_PER_PRESS);
+    }
+
+    @Test
+    public void repeatStormAndUnboundKeys_addNoHandlerPosts() {
+        ServiceController<ButtonBuddyAccessibilityService> controller =
+                Robolectric.buildService(ButtonBuddyAccessibilityService.class).create();
+        ButtonBuddyAccessibilityService service = controller.get();
+        ShadowLooper gestureLooper = shadowOf(gestureLooper());
+        gestureLooper.idle();
+        MetricsRecorder metrics = MetricsRecorder.get();
+        metrics.setEnabled(true);
+        metrics.reset();
+
+        // Typing on a keyboard nothing is bound to, then holding volume down through its long press
+        for (int i = 0; i < UNBOUND_KEY_PRESSES; i++) {
+            long now = SystemClock.uptimeMillis();
+            service.onKeyEvent(new KeyEvent(now, now, KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_A, 0));
+            service.onKeyEvent(new KeyEvent(now, now, KeyEvent.ACTION_UP, KeyEvent.KEYCODE_A, 0));
+        }
+        long down = SystemClock.uptimeMillis();
+        service.onKeyEvent(new KeyEvent(down, down, KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_VOLUME_DOWN, 0));
+        gestureLooper.idle();
+        for (int repeat = 1; repeat <= REPEATS_PER_HOLD; repeat++) {
+            ShadowSystemClock.advanceBy(Duration.ofMillis(50));
+            service.onKeyEvent(new KeyEvent(down, SystemClock.uptimeMillis(), KeyEvent.ACTION_DOWN,
+                    KeyEvent.KEYCODE_VOLUME_DOWN, repeat));
+        }
+        service.onKeyEvent(new KeyEvent(down, SystemClock.uptimeMillis(), KeyEvent.ACTION_UP, KeyEvent.KEYCODE_VOLUME_DOWN, 0));
+        gestureLooper.idle();
+        long posts = metrics.count(MetricsRecorder.COUNTER_HANDLER_POSTS);
+        long shortCircuited = metrics.count(MetricsRecorder.COUNTER_KEY_EVENTS_SHORT_CIRCUITED);
+        controller.destroy();
+
+        assertWithinBudget("Gesture thread posts for a held press among unbound keys", posts, HANDLER_POSTS_PER_PRESS);
+        assertTrue("Short-circuited " + shortCircuited + " key events",
+                shortCircuited >= REPEATS_PER_HOLD + 2 * UNBOUND_KEY_PRESSES);
+    }
+
+    // Bytes the calling thread allocates inside call, averaged; the pause between calls lets the
+    // looper thread recycle each Message, as real key spacing does
+    private static double bytesPerCall(IntConsumer call) throws InterruptedException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (int i = 0; i < ALLOCATION_WARMUP_CALLS + ALLOCATION_MEASURED_CALLS; i++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            call.accept(i);
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            if (i >= ALLOCATION_WARMUP_CALLS) {
+                total += allocated;
+            }
+            Thread.sleep(1);
+        }
+        return (double) total / ALLOCATION_MEASURED_CALLS;
+    }
+
+    private static Looper gestureLooper() {
+        for (Looper looper : ShadowLooper.getAllLoopers()) {
+            if (looper.getThread().getName().equals("ButtonBuddyGestures")) {
+                return looper;
+            }
+        }
+        throw new AssertionError("Gesture thread not running");
+    }
+
+    private static void awaitCatalog(RecyclerView list) {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (list.getAdapter().getItemCount() < APP_COUNT) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Picker showed " + list.getAdapter().getItemCount() + " of " + APP_COUNT + " apps");
+            }
+            frame();
+        }
+    }
+
+    private static void settle() {
+        for (int i = 0; i < 20; i++) {
+            frame();
+        }
+    }
+
+    // Runs a main-thread frame, then gives the background loaders a moment to post results
+    private static void frame() {
+        shadowOf(Looper.getMainLooper()).idleFor(FRAME);
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertWithinBudget(String what, double measured, double budget) {
+        assertTrue(what + " was " + measured + ", over its budget of " + budget, measured <= budget);
+    }
+}
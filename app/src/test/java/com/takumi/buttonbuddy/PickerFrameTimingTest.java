@@ -0,0 +1,129 @@
+package com.takumi.buttonbuddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Intent;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Scrolls the picker through a large synthetic catalog, one simulated frame at a time, with the
+ * legacy and the current rendering pipeline, and counts the rows each one inflates on the main
+ * thread. Counts rather than JVM frame times, which are too noisy to fail on; the frame time
+ * comparison runs on a device in PickerFrameTimingBenchmark.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PickerFrameTimingTest {
+
+    private static final int APP_COUNT = 600;
+    private static final int FRAMES = 300;
+    private static final int SCROLL_PER_FRAME_PX = 90; // A brisk fling, more than a row per frame
+    private static final Duration FRAME = Duration.ofMillis(16);
+    private static final long SETTLE_TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void firstBind_currentRenderingTakesEveryRowFromThePrewarmedPool() {
+        Inflations current = measure(false);
+        Inflations legacy = measure(true);
+
+        String stats = "legacy: " + legacy + "; current: " + current;
+        assertEquals(stats, 0, current.firstBind);
+        assertTrue(stats, legacy.firstBind > 0); // Every row of the first screen, inside the frame
+    }
+
+    @Test
+    public void scroll_currentRenderingInflatesFewerRowsOnTheMainThreadThanLegacy() {
+        Inflations current = measure(false);
+        Inflations legacy = measure(true);
+
+        String stats = "legacy: " + legacy + "; current: " + current;
+        assertTrue(stats, legacy.scrolledPx > 0);
+        assertTrue(stats, current.scrolledPx > 0);
+        assertTrue(stats, current.total() < legacy.total());
+    }
+
+    private Inflations measure(boolean legacyRendering) {
+        Intent intent = new Intent().putExtra(AppPickerActivity.EXTRA_LEGACY_RENDERING, legacyRendering);
+        ActivityController<AppPickerActivity> controller = Robolectric.buildActivity(AppPickerActivity.class, intent).setup();
+        AppPickerActivity activity = controller.get();
+        RecyclerView recyclerView = activity.findViewById(R.id.app_list_recycler_view);
+        settle(() -> activity.rows.pendingPrewarms == 0);
+        int beforeBind = activity.rows.mainThreadInflations;
+        activity.catalogCallback.onAppsLoaded(syntheticCatalog());
+        settle(() -> recyclerView.getAdapter().getItemCount() >= APP_COUNT && recyclerView.getChildCount() > 0);
+        int firstBind = activity.rows.mainThreadInflations - beforeBind;
+
+        int scrolledPx = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            int before = recyclerView.computeVerticalScrollOffset();
+            recyclerView.scrollBy(0, SCROLL_PER_FRAME_PX);
+            shadowOf(Looper.getMainLooper()).idleFor(FRAME); // Layout pass and prefetch for the next frame
+            scrolledPx += recyclerView.computeVerticalScrollOffset() - before;
+        }
+        int scroll = activity.rows.mainThreadInflations - beforeBind - firstBind;
+        controller.pause().stop().destroy();
+        return new Inflations(firstBind, scroll, scrolledPx);
+    }
+
+    // The inflater and the list differ work on their own threads and deliver through the main looper
+    private static void settle(BooleanSupplier done) {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        while (true) {
+            shadowOf(Looper.getMainLooper()).idleFor(FRAME);
+            if (done.getAsBoolean()) {
+                return;
+            }
+            assertTrue("Picker did not settle in time", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static List<AppInfo> syntheticCatalog() {
+        List<AppInfo> apps = new ArrayList<>(APP_COUNT);
+        for (int i = 0; i < APP_COUNT; i++) {
+            apps.add(new AppInfo(String.format("App %04d", i), "com.example.app" + i, 0L));
+        }
+        apps.sort(AppInfo.BY_NAME);
+        return apps;
+    }
+
+    private static final class Inflations {
+        final int firstBind;
+        final int scroll;
+        final int scrolledPx;
+
+        Inflations(int firstBind, int scroll, int scrolledPx) {
+            this.firstBind = firstBind;
+            this.scroll = scroll;
+            this.scrolledPx = scrolledPx;
+        }
+
+        int total() {
+            return firstBind + scroll;
+        }
+
+        @Override
+        public String toString() {
+            return firstBind + " rows inflated on the first bind, " + scroll + " while scrolling " + scrolledPx + " px";
+        }
+    }
+}
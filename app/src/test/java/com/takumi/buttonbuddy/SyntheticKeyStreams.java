@@ -0,0 +1,161 @@
+package com.takumi.buttonbuddy;
+
+import static com.takumi.buttonbuddy.GestureEngine.ACTION_DOWN;
+import static com.takumi.buttonbuddy.GestureEngine.ACTION_UP;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_DOUBLE_TAP;
+import static com.takumi.buttonbuddy.GestureEngine.GESTURE_LONG_PRESS;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_DOWN;
+import static com.takumi.buttonbuddy.GestureEngine.KEYCODE_VOLUME_UP;
+
+import java.util.Random;
+
+/**
+ * Seeded generators for high-rate key streams with their expected gestures, under the config
+ * from {@link #newTrace()}: volume-down long press (1 s) and volume-up double tap (300 ms).
+ * Auto-repeat follows the platform: the first repeat after {@link #KEY_REPEAT_TIMEOUT_MILLIS},
+ * then one per repeat delay.
+ */
+final class SyntheticKeyStreams {
+
+    static final long KEY_REPEAT_TIMEOUT_MILLIS = 500;
+    static final long KEY_REPEAT_DELAY_MILLIS = 50;
+    private static final long IDLE_MILLIS = 1500; // Between scenarios, longer than any gesture window
+
+    private final Random random;
+    private final KeyEventTrace trace = newTrace();
+    private long now;
+
+    private SyntheticKeyStreams(long seed) {
+        random = new Random(seed);
+    }
+
+    static KeyEventTrace newTrace() {
+        GestureEngine engine = new GestureEngine(() -> 0, (gesture, keyCode, eventTime) -> { });
+        engine.setGestureEnabled(KEYCODE_VOLUME_DOWN, GESTURE_LONG_PRESS, true);
+        engine.setGestureEnabled(KEYCODE_VOLUME_UP, GESTURE_DOUBLE_TAP, true);
+        return KeyEventTrace.of(engine, 0);
+    }
+
+    /** Long and short volume-down holds, auto-repeating every {@code repeatDelayMillis}. */
+    static KeyEventTrace autoRepeatStorm(long seed, int holds, long repeatDelayMillis) {
+        SyntheticKeyStreams streams = new SyntheticKeyStreams(seed);
+        for (int i = 0; i < holds; i++) {
+            streams.holdScenario(repeatDelayMillis);
+        }
+        return streams.trace;
+    }
+
+    /** Bursts of one to four fast volume-up taps, and volume-down taps that must not fire. */
+    static KeyEventTrace rapidTaps(long seed, int bursts) {
+        SyntheticKeyStreams streams = new SyntheticKeyStreams(seed);
+        for (int i = 0; i < bursts; i++) {
+            streams.tapScenario();
+        }
+        return streams.trace;
+    }
+
+    /** Volume-down holds with volume-up taps and other keys landing in the middle. */
+    static KeyEventTrace interleavedKeys(long seed, int rounds) {
+        SyntheticKeyStreams streams = new SyntheticKeyStreams(seed);
+        for (int i = 0; i < rounds; i++) {
+            streams.interleavedScenario();
+        }
+        return streams.trace;
+    }
+
+    /** All of the above, shuffled. */
+    static KeyEventTrace mixed(long seed, int scenarios) {
+        SyntheticKeyStreams streams = new SyntheticKeyStreams(seed);
+        for (int i = 0; i < scenarios; i++) {
+            switch (streams.random.nextInt(3)) {
+                case 0:
+                    streams.holdScenario(KEY_REPEAT_DELAY_MILLIS);
+                    break;
+                case 1:
+                    streams.tapScenario();
+                    break;
+                default:
+                    streams.interleavedScenario();
+                    break;
+            }
+        }
+        return streams.trace;
+    }
+
+    private void holdScenario(long repeatDelayMillis) {
+        long start = now;
+        boolean longHold = random.nextBoolean();
+        long duration = longHold ? between(1100, 3000) : between(100, 900);
+        hold(KEYCODE_VOLUME_DOWN, duration, repeatDelayMillis);
+        if (longHold) {
+            trace.addGesture(GESTURE_LONG_PRESS, KEYCODE_VOLUME_DOWN, start + 1000);
+        }
+        now += IDLE_MILLIS;
+    }
+
+    private void tapScenario() {
+        int taps = 1 + random.nextInt(4);
+        for (int i = 1; i <= taps; i++) {
+            tap(KEYCODE_VOLUME_UP);
+            if (i % 2 == 0) {
+                trace.addGesture(GESTURE_DOUBLE_TAP, KEYCODE_VOLUME_UP, now); // At the second release
+            }
+            now += between(40, 200); // Well inside the 300 ms window
+        }
+        now += IDLE_MILLIS;
+        for (int i = 0; i < 6; i++) {
+            tap(KEYCODE_VOLUME_DOWN); // Only the long press is bound on volume down
+            now += between(30, 100);
+        }
+        now += IDLE_MILLIS;
+    }
+
+    private void interleavedScenario() {
+        long start = now;
+        key(KEYCODE_VOLUME_DOWN, ACTION_DOWN, 0);
+        if (random.nextBoolean()) {
+            // A double tap on volume up during the hold keeps the volume-down press alive
+            now += between(200, 400);
+            tap(KEYCODE_VOLUME_UP);
+            now += between(40, 150);
+            tap(KEYCODE_VOLUME_UP);
+            trace.addGesture(GESTURE_DOUBLE_TAP, KEYCODE_VOLUME_UP, now);
+            now = start + between(1100, 2000);
+            key(KEYCODE_VOLUME_DOWN, ACTION_UP, 0);
+            trace.addGesture(GESTURE_LONG_PRESS, KEYCODE_VOLUME_DOWN, start + 1000);
+        } else {
+            // Any other key cancels the pending long press
+            now += between(300, 900);
+            tap(KeyEventTrace.KEYCODE_OTHER);
+            now = start + between(1100, 2000);
+            key(KEYCODE_VOLUME_DOWN, ACTION_UP, 0);
+        }
+        now += IDLE_MILLIS;
+    }
+
+    private void hold(int keyCode, long duration, long repeatDelayMillis) {
+        long start = now;
+        key(keyCode, ACTION_DOWN, 0);
+        int repeat = 1;
+        for (long t = start + KEY_REPEAT_TIMEOUT_MILLIS; t < start + duration; t += repeatDelayMillis) {
+            now = t;
+            key(keyCode, ACTION_DOWN, repeat++);
+        }
+        now = start + duration;
+        key(keyCode, ACTION_UP, 0);
+    }
+
+    private void tap(int keyCode) {
+        key(keyCode, ACTION_DOWN, 0);
+        now += between(20, 90);
+        key(keyCode, ACTION_UP, 0);
+    }
+
+    private void key(int keyCode, int action, int repeatCount) {
+        trace.addEvent(keyCode, action, repeatCount, now);
+    }
+
+    private long between(long min, long max) {
+        return min + (long) (random.nextDouble() * (max - min));
+    }
+}
@@ -0,0 +1,81 @@
+package com.takumi.buttonbuddy;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class UsageStoreTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UsageStore newStore(File file) {
+        return new UsageStore(file, Runnable::run, 3);
+    }
+
+    @Test
+    public void topKeys_recentUseOutranksOlderFrequentUse() throws IOException {
+        UsageStore store = newStore(folder.newFile("usage.bin"));
+        for (int i = 0; i < 4; i++) {
+            store.record("com.old.favorite", i);
+        }
+        store.record("com.new.favorite", 4 * UsageStore.HALF_LIFE_MILLIS); // Worth 16 uses back then
+        store.record("com.other", 0);
+
+        assertEquals(Arrays.asList("com.new.favorite", "com.old.favorite", "com.other"), store.topKeys());
+    }
+
+    @Test
+    public void topKeys_heapKeepsOnlyTheKMostUsed() throws IOException {
+        UsageStore store = newStore(folder.newFile("usage.bin"));
+        String[] keys = {"a", "b", "c", "d", "e"};
+        for (int i = 0; i < keys.length; i++) {
+            for (int uses = 0; uses <= i; uses++) { // "e" is used most
+                store.record(keys[i], DAY);
+            }
+        }
+        store.record("b@10", DAY * 2);
+        store.record("b@10", DAY * 2);
+        store.record("b@10", DAY * 2);
+        store.record("b@10", DAY * 2); // A day later four uses outweigh five, so "c" drops out
+
+        assertEquals(Arrays.asList("b@10", "e", "d"), store.topKeys());
+    }
+
+    @Test
+    public void load_restoresScoresWrittenBefore() throws IOException {
+        File file = new File(folder.getRoot(), "usage.bin");
+        UsageStore store = newStore(file);
+        store.record("com.a", DAY);
+        store.record("com.b", DAY);
+        store.record("com.b", DAY);
+
+        UsageStore reloaded = newStore(file);
+        reloaded.load();
+        assertEquals(Arrays.asList("com.b", "com.a"), reloaded.topKeys());
+
+        reloaded.record("com.a", DAY + 2 * UsageStore.HALF_LIFE_MILLIS); // Epoch survived the reload
+        assertEquals(Arrays.asList("com.a", "com.b"), reloaded.topKeys());
+    }
+
+    @Test
+    public void load_ignoresACorruptFile() throws IOException {
+        File file = folder.newFile("usage.bin");
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+        UsageStore store = newStore(file);
+
+        store.load();
+
+        assertEquals(Collections.emptyList(), store.topKeys());
+    }
+}
@@ -0,0 +1,58 @@
+package com.takumi.buttonbuddy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the launch target on the gesture path. SharedPreferences cannot run on the JVM, so
+ * {@link #sharedPreferencesModel()} models SharedPreferencesImpl.getString: a lock around a
+ * HashMap lookup. It is compared with the volatile snapshot AppPrefs now reads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigReadBenchmark {
+
+    private static final String KEY_TARGET_PACKAGE = "target_package";
+
+    private final Object lock = new Object();
+    private final Map<String, Object> prefsMap = new HashMap<>();
+    private volatile String snapshot;
+
+    @Setup
+    public void setUp() {
+        prefsMap.put(KEY_TARGET_PACKAGE, "com.google.android.apps.walletnfcrel");
+        for (int i = 0; i < 16; i++) {
+            prefsMap.put("other_key_" + i, "value" + i);
+        }
+        snapshot = "com.google.android.apps.walletnfcrel";
+    }
+
+    @Benchmark
+    public String sharedPreferencesModel() {
+        synchronized (lock) {
+            String value = (String) prefsMap.get(KEY_TARGET_PACKAGE);
+            return value != null ? value : "com.google.android.apps.walletnfcrel";
+        }
+    }
+
+    @Benchmark
+    public String snapshotRead() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,161 @@
+package com.takumi.buttonbuddy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Loading and saving the bindings. SharedPreferences cannot run on the JVM, so the prefs path
+ * is modelled on SharedPreferencesImpl: the whole map written as escaped XML and synced, and
+ * read back with a streaming XML parser before the bindings string is decoded. ConfigStore
+ * writes and reads its binary file the same way the app does. Both sides fsync on save.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigStoreBenchmark {
+
+    @Param({"1", "50"})
+    public int foregroundProfiles;
+
+    private File dir;
+    private File xmlFile;
+    private File binaryFile;
+    private BindingProfiles profiles;
+    private SAXParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = File.createTempFile("config", "bench");
+        dir.delete();
+        dir.mkdirs();
+        xmlFile = new File(dir, "ButtonBuddyPrefs.xml");
+        binaryFile = new File(dir, "bindings.cfg");
+        profiles = BindingProfiles.EMPTY.with(null, GestureEngine.KEYCODE_VOLUME_DOWN,
+                GestureEngine.GESTURE_LONG_PRESS, "com.google.android.apps.walletnfcrel");
+        for (int i = 0; i < foregroundProfiles; i++) {
+            profiles = profiles
+                    .with("com.example.foreground" + i, GestureEngine.KEYCODE_VOLUME_DOWN,
+                            GestureEngine.GESTURE_LONG_PRESS, "com.example.target" + i)
+                    .with("com.example.foreground" + i, GestureEngine.KEYCODE_VOLUME_UP,
+                            GestureEngine.GESTURE_DOUBLE_TAP, "uri:https://example.com/action?id=" + i);
+        }
+        parser = SAXParserFactory.newInstance().newSAXParser();
+        prefsXmlSave();
+        binarySave();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        xmlFile.delete();
+        binaryFile.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public void prefsXmlSave() throws IOException {
+        try (FileOutputStream fileOut = new FileOutputStream(xmlFile)) {
+            Writer out = new OutputStreamWriter(new BufferedOutputStream(fileOut), StandardCharsets.UTF_8);
+            out.write("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n<map>\n");
+            out.write("    <string name=\"bindings\">");
+            escape(out, profiles.encode());
+            out.write("</string>\n    <boolean name=\"metrics_enabled\" value=\"false\" />\n</map>\n");
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    @Benchmark
+    public BindingProfiles prefsXmlLoad() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        DefaultHandler handler = new DefaultHandler() {
+            private String name;
+            private StringBuilder text;
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (qName.equals("string")) {
+                    name = attributes.getValue("name");
+                    text = new StringBuilder();
+                } else if (qName.equals("boolean")) {
+                    map.put(attributes.getValue("name"), Boolean.parseBoolean(attributes.getValue("value")));
+                }
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                if (text != null) {
+                    text.append(ch, start, length);
+                }
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                if (qName.equals("string")) {
+                    map.put(name, text.toString());
+                    text = null;
+                }
+            }
+        };
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(xmlFile), 16 * 1024)) {
+            parser.parse(in, handler);
+        }
+        return BindingProfiles.decode((String) map.get("bindings"));
+    }
+
+    @Benchmark
+    public void binarySave() throws IOException {
+        ConfigStore.write(binaryFile, profiles);
+    }
+
+    @Benchmark
+    public BindingProfiles binaryLoad() {
+        return ConfigStore.read(binaryFile);
+    }
+
+    private static void escape(Writer out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': out.write("&amp;"); break;
+                case '<': out.write("&lt;"); break;
+                case '>': out.write("&gt;"); break;
+                case '"': out.write("&quot;"); break;
+                case '\n': out.write("&#10;"); break;
+                case '\t': out.write("&#9;"); break;
+                default: out.write(c); break;
+            }
+        }
+    }
+}
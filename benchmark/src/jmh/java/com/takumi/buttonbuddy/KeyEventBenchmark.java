@@ -0,0 +1,95 @@
+package com.takumi.buttonbuddy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key handling as done by ButtonBuddyAccessibilityService.onKeyEvent, minus the Android
+ * plumbing: each operation feeds GestureEngine one complete press cycle.
+ * gc.alloc.rate.norm is expected to stay at 0 B/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyEventBenchmark {
+
+    private static final int KEYCODE_BACK = 4;
+
+    private long now;
+    private GestureEngine engine;
+    private Blackhole blackhole;
+    private BindingProfiles profiles;
+    private String foregroundPackage;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        now = 1_000_000;
+        engine = new GestureEngine(() -> now, (gesture, keyCode, eventTime) -> this.blackhole.consume(gesture));
+        engine.setGestureEnabled(GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS, true);
+
+        profiles = BindingProfiles.EMPTY.with(null, GestureEngine.KEYCODE_VOLUME_DOWN,
+                GestureEngine.GESTURE_LONG_PRESS, "com.example.wallet");
+        for (int i = 0; i < 50; i++) {
+            profiles = profiles.with("com.example.app" + i, GestureEngine.KEYCODE_VOLUME_DOWN,
+                    GestureEngine.GESTURE_LONG_PRESS, "com.example.target" + i);
+        }
+        // A fresh, equal String like the one an AccessibilityEvent carries
+        foregroundPackage = new String("com.example.app25".toCharArray());
+    }
+
+    /** Volume-down tapped and released before the threshold. */
+    @Benchmark
+    public long shortPress() {
+        engine.onKeyEvent(GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.ACTION_DOWN, 0, now);
+        now += 80;
+        engine.onKeyEvent(GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.ACTION_UP, 0, now);
+        now += 500;
+        return engine.nextDeadline();
+    }
+
+    /** Volume-down held past the threshold with 20 auto-repeats, then released. */
+    @Benchmark
+    public long longPressWithRepeats() {
+        engine.onKeyEvent(GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.ACTION_DOWN, 0, now);
+        for (int repeat = 1; repeat <= 20; repeat++) {
+            now += 50;
+            engine.onKeyEvent(GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.ACTION_DOWN, repeat, now);
+            if (now >= engine.nextDeadline()) {
+                engine.onTimer();
+            }
+        }
+        engine.onKeyEvent(GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.ACTION_UP, 0, now);
+        now += 500;
+        return engine.nextDeadline();
+    }
+
+    /** Per-app binding lookup done when a gesture fires, with 50 app profiles. */
+    @Benchmark
+    public String resolveBinding() {
+        return profiles.resolve(foregroundPackage, GestureEngine.KEYCODE_VOLUME_DOWN, GestureEngine.GESTURE_LONG_PRESS);
+    }
+
+    /** A key nobody is bound to, the most common event the service sees. */
+    @Benchmark
+    public long unrelatedKey() {
+        engine.onKeyEvent(KEYCODE_BACK, GestureEngine.ACTION_DOWN, 0, now);
+        engine.onKeyEvent(KEYCODE_BACK, GestureEngine.ACTION_UP, 0, now);
+        now += 100;
+        return engine.nextDeadline();
+    }
+}
@@ -0,0 +1,48 @@
+package com.takumi.buttonbuddy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What ButtonBuddyAccessibilityService.onKeyEvent adds per key event for metrics: a counter
+ * and an event-handling sample. With {@code enabled=false} this should be indistinguishable
+ * from an empty method; neither variant may allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private MetricsRecorder metrics;
+
+    @Setup
+    public void setUp() {
+        metrics = new MetricsRecorder();
+        metrics.setEnabled(enabled);
+    }
+
+    @Benchmark
+    public long recordKeyEvent() {
+        long start = metrics.startNanos();
+        metrics.increment(MetricsRecorder.COUNTER_KEY_EVENTS);
+        metrics.recordSince(MetricsRecorder.HISTOGRAM_EVENT_HANDLING, start);
+        return start;
+    }
+}
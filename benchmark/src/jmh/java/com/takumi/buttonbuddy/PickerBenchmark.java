@@ -0,0 +1,84 @@
+package com.takumi.buttonbuddy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The picker's filter and sort over synthetic catalogs. The "legacy" benchmarks reproduce the
+ * original AppListAdapter.filter (toLowerCase + contains on every keystroke) and the
+ * compareToIgnoreCase sort from loadInstalledApps, as a reference for the current code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PickerBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int catalogSize;
+
+    @Param({"g", "wal", "gw"})
+    public String query;
+
+    private List<AppInfo> unsorted;
+    private List<AppInfo> sorted;
+    private AppSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        unsorted = SyntheticCatalog.unsorted(catalogSize);
+        sorted = SyntheticCatalog.sorted(catalogSize);
+        index = AppSearchIndex.build(sorted);
+    }
+
+    @Benchmark
+    public List<AppInfo> legacyFilter() {
+        List<AppInfo> filtered = new ArrayList<>();
+        String lowerQuery = query.toLowerCase();
+        for (AppInfo app : sorted) {
+            if (app.getAppName().toLowerCase().contains(lowerQuery)) {
+                filtered.add(app);
+            }
+        }
+        return filtered;
+    }
+
+    @Benchmark
+    public List<AppInfo> indexedSearch() {
+        return index.search(query, () -> false);
+    }
+
+    @Benchmark
+    public AppSearchIndex buildSearchIndex() {
+        return AppSearchIndex.build(sorted);
+    }
+
+    @Benchmark
+    public List<AppInfo> legacySort() {
+        List<AppInfo> apps = new ArrayList<>(unsorted);
+        apps.sort((o1, o2) -> o1.getAppName().compareToIgnoreCase(o2.getAppName()));
+        return apps;
+    }
+
+    @Benchmark
+    public List<AppInfo> sortKeySort() {
+        List<AppInfo> apps = new ArrayList<>(unsorted);
+        apps.sort(AppInfo.BY_NAME);
+        return apps;
+    }
+}
@@ -0,0 +1,44 @@
+package com.takumi.buttonbuddy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic fake app catalogs shaped like a managed device's installed apps. */
+final class SyntheticCatalog {
+
+    private static final String[] WORDS = {
+            "Google", "Wallet", "Scanner", "POS", "Terminal", "Camera", "Maps", "Mail", "Inventory",
+            "Field", "Service", "Notes", "Calculator", "Clock", "Files", "Photos", "Settings", "Store",
+            "Caf\u00e9", "D\u00e9j\u00e0", "Pay", "Drive", "Docs", "Chat", "Authenticator", "Barcode", "Label", "Print"};
+    private static final String[] VENDORS = {"com.google.android", "com.acme", "org.example", "com.vendor", "net.fleet"};
+
+    private SyntheticCatalog() {
+    }
+
+    /** {@code size} apps in random order, like PackageManager returns them. */
+    static List<AppInfo> unsorted(int size) {
+        Random random = new Random(size);
+        List<AppInfo> apps = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int words = 1 + random.nextInt(3);
+            StringBuilder name = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    name.append(' ');
+                }
+                name.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            name.append(' ').append(i); // Keeps labels unique
+            String packageName = VENDORS[random.nextInt(VENDORS.length)] + ".app" + i;
+            apps.add(new AppInfo(name.toString(), packageName, 1_600_000_000_000L + random.nextInt(1_000_000)));
+        }
+        return apps;
+    }
+
+    static List<AppInfo> sorted(int size) {
+        List<AppInfo> apps = unsorted(size);
+        apps.sort(AppInfo.BY_NAME);
+        return apps;
+    }
+}